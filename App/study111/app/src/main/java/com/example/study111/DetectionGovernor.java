@@ -0,0 +1,217 @@
+package com.example.study111;
+
+import java.util.Locale;
+
+/**
+ * Closed-loop CPU budget governor for motion detection.
+ *
+ * Measures, over each evaluation interval (sensor time):
+ *  - CPU time spent per processed window (thread CPU clock, supplied by the caller)
+ *  - sensor event rate
+ * and compares them to the configured budget. One knob is moved per interval:
+ *
+ *  over budget  -> inference stride up, then hop up, then sampling period up
+ *  well under   -> sampling period down (if the event rate allows), then hop down,
+ *                  then stride down
+ *
+ * A step is only taken if the worst-case detection latency
+ * (hop * stride + sampling period) stays within {@link Config#maxLatencyMs}.
+ *
+ * Pure Java so it can be driven by a simulated cost model in unit tests.
+ */
+public final class DetectionGovernor {
+
+    /** Budget and bounds. Defaults are conservative for a 25 min focus session. */
+    public static final class Config {
+        /** CPU allowed for detection, in ns per second of wall time (5 ms/s = 0.5% of a core). */
+        public long cpuBudgetNsPerSec = 5_000_000L;
+        /** Max accelerometer events per second we want delivered. */
+        public float maxEventRateHz = 60f;
+
+        /**
+         * Sampling period bounds (us). The budget only counts window CPU, not event delivery,
+         * wakeups or the sensor hub, and the move threshold was tuned at 200 ms
+         * (SENSOR_DELAY_NORMAL); so by default the governor never samples faster than that
+         * and only backs off to save more. Lower the minimum only with event cost budgeted.
+         */
+        public int minSamplingPeriodUs = 200_000;
+        public int maxSamplingPeriodUs = 400_000;
+        public int initialSamplingPeriodUs = 200_000;
+
+        /** Window hop bounds (ms). */
+        public int minHopMs = 250;
+        public int maxHopMs = 2_000;
+        public int initialHopMs = 500;
+
+        /** Run the classifier on every Nth window. */
+        public int maxInferenceStride = 4;
+
+        /** Worst-case time from movement to decision; never exceeded by any adjustment. */
+        public int maxLatencyMs = 3_000;
+
+        /** How often measurements are evaluated (sensor time). */
+        public int evalIntervalMs = 5_000;
+        /** Upgrade only when CPU usage is below this fraction of the budget. */
+        public float upgradeHeadroom = 0.5f;
+    }
+
+    private final Config cfg;
+
+    // Current decisions
+    private int samplingPeriodUs;
+    private int hopMs;
+    private int inferenceStride = 1;
+
+    // Measurement for the current interval
+    private long intervalStartNs = -1;
+    private long intervalCpuNs;
+    private int intervalEvents;
+    private int intervalWindows;
+
+    // Last completed interval (for display)
+    private float lastCpuNsPerSec;
+    private float lastEventRateHz;
+    private float lastCpuNsPerWindow;
+    private int adjustments;
+
+    public DetectionGovernor(Config cfg) {
+        if (cfg.minSamplingPeriodUs <= 0 || cfg.minSamplingPeriodUs > cfg.maxSamplingPeriodUs) {
+            throw new IllegalArgumentException("bad sampling period bounds");
+        }
+        if (cfg.minHopMs <= 0 || cfg.minHopMs > cfg.maxHopMs) {
+            throw new IllegalArgumentException("bad hop bounds");
+        }
+        if (cfg.maxInferenceStride < 1) throw new IllegalArgumentException("maxInferenceStride < 1");
+        this.cfg = cfg;
+        this.samplingPeriodUs = clamp(cfg.initialSamplingPeriodUs, cfg.minSamplingPeriodUs, cfg.maxSamplingPeriodUs);
+        this.hopMs = clamp(cfg.initialHopMs, cfg.minHopMs, cfg.maxHopMs);
+        // Pull back into the latency bound if the initial config violates it
+        while (latencyMs(samplingPeriodUs, hopMs, inferenceStride) > cfg.maxLatencyMs && hopMs > cfg.minHopMs) {
+            hopMs = Math.max(cfg.minHopMs, hopMs / 2);
+        }
+    }
+
+    public DetectionGovernor() { this(new Config()); }
+
+    // -----------------------------------
+    // Inputs
+    // -----------------------------------
+
+    /** Count one sensor event (sensor timestamp in ns). */
+    public void onSensorEvent(long timestampNs) {
+        if (intervalStartNs < 0) intervalStartNs = timestampNs;
+        intervalEvents++;
+    }
+
+    /** Record CPU time spent on one window (feature extraction + inference). */
+    public void onWindowProcessed(long cpuNs) {
+        intervalCpuNs += Math.max(0, cpuNs);
+        intervalWindows++;
+    }
+
+    /**
+     * Evaluate the interval if it has elapsed and adjust at most one knob.
+     *
+     * @return true if the sampling period changed (caller must re-register the listener)
+     */
+    public boolean maybeAdjust(long nowNs) {
+        if (intervalStartNs < 0) return false;
+        long elapsedNs = nowNs - intervalStartNs;
+        if (elapsedNs < cfg.evalIntervalMs * 1_000_000L) return false;
+
+        double sec = elapsedNs / 1e9;
+        lastCpuNsPerSec = (float) (intervalCpuNs / sec);
+        lastEventRateHz = (float) (intervalEvents / sec);
+        lastCpuNsPerWindow = intervalWindows > 0 ? (float) intervalCpuNs / intervalWindows : 0f;
+
+        intervalStartNs = nowNs;
+        intervalCpuNs = 0;
+        intervalEvents = 0;
+        intervalWindows = 0;
+
+        int prevPeriod = samplingPeriodUs;
+        boolean overCpu  = lastCpuNsPerSec > cfg.cpuBudgetNsPerSec;
+        boolean overRate = lastEventRateHz > cfg.maxEventRateHz;
+
+        if (overRate) {
+            // Only the sampling period controls the event rate
+            if (tryPeriod(Math.min(cfg.maxSamplingPeriodUs, samplingPeriodUs * 3 / 2))) adjustments++;
+        } else if (overCpu) {
+            if (tryStride(inferenceStride + 1)
+                    || tryHop(Math.min(cfg.maxHopMs, hopMs * 2))
+                    || tryPeriod(Math.min(cfg.maxSamplingPeriodUs, samplingPeriodUs * 3 / 2))) {
+                adjustments++;
+            }
+        } else if (lastCpuNsPerSec < cfg.cpuBudgetNsPerSec * cfg.upgradeHeadroom) {
+            int faster = Math.max(cfg.minSamplingPeriodUs, samplingPeriodUs * 2 / 3);
+            boolean rateOk = 1e6f / faster <= cfg.maxEventRateHz;
+            if ((rateOk && tryPeriod(faster))
+                    || tryHop(Math.max(cfg.minHopMs, hopMs / 2))
+                    || tryStride(inferenceStride - 1)) {
+                adjustments++;
+            }
+        }
+        return samplingPeriodUs != prevPeriod;
+    }
+
+    /** Restart measurement (e.g. after the listener was re-registered or a session started). */
+    public void resetMeasurement() {
+        intervalStartNs = -1;
+        intervalCpuNs = 0;
+        intervalEvents = 0;
+        intervalWindows = 0;
+    }
+
+    // -----------------------------------
+    // Decisions / measured usage
+    // -----------------------------------
+    public int getSamplingPeriodUs() { return samplingPeriodUs; }
+    public int getHopMs() { return hopMs; }
+    public int getInferenceStride() { return inferenceStride; }
+    public int getWorstCaseLatencyMs() { return latencyMs(samplingPeriodUs, hopMs, inferenceStride); }
+
+    public float getCpuNsPerSec() { return lastCpuNsPerSec; }
+    public float getCpuNsPerWindow() { return lastCpuNsPerWindow; }
+    public float getEventRateHz() { return lastEventRateHz; }
+    public int getAdjustmentCount() { return adjustments; }
+
+    public String describe() {
+        return String.format(Locale.US,
+                "period=%dms hop=%dms stride=%d latency<=%dms cpu=%.2fms/s (budget %.2f) %.2fms/window rate=%.1fHz",
+                samplingPeriodUs / 1000, hopMs, inferenceStride, getWorstCaseLatencyMs(),
+                lastCpuNsPerSec / 1e6f, cfg.cpuBudgetNsPerSec / 1e6f, lastCpuNsPerWindow / 1e6f,
+                lastEventRateHz);
+    }
+
+    // -----------------------------------
+    // Helpers
+    // -----------------------------------
+    private boolean tryPeriod(int periodUs) {
+        if (periodUs == samplingPeriodUs) return false;
+        if (latencyMs(periodUs, hopMs, inferenceStride) > cfg.maxLatencyMs) return false;
+        samplingPeriodUs = periodUs;
+        return true;
+    }
+
+    private boolean tryHop(int hop) {
+        if (hop == hopMs) return false;
+        if (latencyMs(samplingPeriodUs, hop, inferenceStride) > cfg.maxLatencyMs) return false;
+        hopMs = hop;
+        return true;
+    }
+
+    private boolean tryStride(int stride) {
+        if (stride < 1 || stride > cfg.maxInferenceStride || stride == inferenceStride) return false;
+        if (latencyMs(samplingPeriodUs, hopMs, stride) > cfg.maxLatencyMs) return false;
+        inferenceStride = stride;
+        return true;
+    }
+
+    private static int latencyMs(int periodUs, int hopMs, int stride) {
+        return hopMs * stride + periodUs / 1000;
+    }
+
+    private static int clamp(int v, int lo, int hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.study111;
+
+/**
+ * Reads sensor direct-channel reports out of the shared ring written by the sensor hub.
+ *
+ * Each report is 104 bytes, little-endian (see SensorDirectChannel / sensors.h):
+ *   0  int32   size (104)
+ *   4  int32   report token (from SensorDirectChannel.configure)
+ *   8  int32   sensor type
+ *  12  uint32  atomic counter, 1 for the first report, skips 0 on wrap-around
+ *  16  int64   timestamp (ns, elapsedRealtimeNanos base)
+ *  24  float[16] data (accelerometer uses [0..2])
+ *  88  int32[4] reserved
+ *
+ * The hub fills slots in order and wraps at the end of the buffer; the counter is
+ * written last. The parser tracks the slot and counter it expects next:
+ *  - counter 0 or older than expected: nothing new yet
+ *  - counter ahead of expected: the writer lapped us; skip to the oldest report
+ *    still in the ring and count the gap as lost
+ *  - counter read before the copy, the copy's own counter and the counter read after
+ *    the copy disagree: the writer got into the slot mid-copy (torn), dropped and resynced
+ *
+ * Decimation to the governor's period keeps a running schedule rather than measuring
+ * from the last emitted sample, so a 66 ms request out of a 20 ms stream averages 66 ms
+ * (60/80 ms steps) instead of always rounding up to 80 ms.
+ *
+ * Reports are copied one at a time into a reused byte[], so draining allocates nothing.
+ * Kept free of Android types so it can be tested against synthetic byte streams.
+ */
+public final class DirectReportParser {
+
+    public static final int REPORT_SIZE = 104;
+    static final int OFFSET_SIZE = 0;
+    static final int OFFSET_TOKEN = 4;
+    static final int OFFSET_TYPE = 8;
+    static final int OFFSET_COUNTER = 12;
+    static final int OFFSET_TIMESTAMP = 16;
+    static final int OFFSET_DATA = 24;
+
+    /** Random-access view of the shared memory (MemoryFile on device, byte[] in tests). */
+    public interface Source {
+        void read(int offset, byte[] dst, int dstOffset, int length);
+    }
+
+    public interface Sink {
+        void onSample(float x, float y, float z, long timestampNs);
+    }
+
+    private final int slots;
+    private final int token;
+    private final byte[] report = new byte[REPORT_SIZE];
+    private final byte[] counterBytes = new byte[4];
+
+    private int slot = 0;
+    private int expected = 1;
+    private long minIntervalNs = 0;
+    private long nextDueNs = Long.MIN_VALUE; // MIN_VALUE: emit the next sample
+
+    private long received, lost, torn, wraps, decimated;
+
+    /**
+     * @param ringBytes size of the shared memory; whole reports only
+     * @param token     report token of the sensor to emit (0 = any)
+     */
+    public DirectReportParser(int ringBytes, int token) {
+        if (ringBytes < REPORT_SIZE) throw new IllegalArgumentException("ring too small");
+        this.slots = ringBytes / REPORT_SIZE;
+        this.token = token;
+    }
+
+    /**
+     * Emit one sample per {@code intervalNs} on average (the hub runs at fixed rate levels,
+     * the pipeline expects the governor's sampling period). 0 emits everything.
+     */
+    public void setMinIntervalNs(long intervalNs) {
+        minIntervalNs = Math.max(0, intervalNs);
+        nextDueNs = Long.MIN_VALUE;
+    }
+
+    public long getReceived() { return received; }
+    public long getLost() { return lost; }
+    /** Reports dropped because the writer overwrote them mid-copy. */
+    public long getTorn() { return torn; }
+    public long getWraps() { return wraps; }
+    public long getDecimated() { return decimated; }
+
+    /** Start over at slot 0 / counter 1 (after the channel is reconfigured). */
+    public void reset() {
+        slot = 0;
+        expected = 1;
+        nextDueNs = Long.MIN_VALUE;
+    }
+
+    /** Resume at a known slot and counter instead of slot 0 / counter 1. */
+    void resync(int slot, int counter) {
+        this.slot = slot;
+        this.expected = counter;
+    }
+
+    /** Consume every report written since the last call. @return samples emitted */
+    public int drain(Source src, Sink sink) {
+        int emitted = 0;
+        // Bounded: a writer that keeps lapping us cannot hold the caller forever
+        for (int guard = 2 * slots; guard > 0; guard--) {
+            int offset = slot * REPORT_SIZE;
+            src.read(offset + OFFSET_COUNTER, counterBytes, 0, 4);
+            int counter = readInt(counterBytes, 0);
+            if (counter == 0) break; // slot never written
+            int ahead = distance(expected, counter);
+            if (ahead < 0) break;    // still last lap's report
+            if (ahead > 0) {
+                // Lapped: the oldest report still in the ring sits in the next slot
+                int oldest = advance(counter, 1 - slots);
+                lost += distance(expected, oldest);
+                expected = oldest;
+                slot = (slot + 1 == slots) ? 0 : slot + 1;
+                continue;
+            }
+
+            // The hub writes the counter last; if it moved around the copy, the payload may be torn
+            src.read(offset, report, 0, REPORT_SIZE);
+            src.read(offset + OFFSET_COUNTER, counterBytes, 0, 4);
+            if (readInt(report, OFFSET_COUNTER) != counter || readInt(counterBytes, 0) != counter) {
+                torn++; // re-read the slot; the lap shows up in lost
+                continue;
+            }
+
+            received++;
+            int next = counter + 1;
+            if (next == 0) {
+                next = 1;
+                wraps++;
+            }
+            expected = next;
+            slot = (slot + 1 == slots) ? 0 : slot + 1;
+
+            if (token != 0 && readInt(report, OFFSET_TOKEN) != token) continue;
+            long ts = readLong(report, OFFSET_TIMESTAMP);
+            if (nextDueNs != Long.MIN_VALUE && ts < nextDueNs) {
+                decimated++;
+                continue;
+            }
+            // Keep the schedule unless the stream fell a whole interval behind it
+            nextDueNs = (nextDueNs == Long.MIN_VALUE || ts - nextDueNs >= minIntervalNs)
+                    ? ts + minIntervalNs : nextDueNs + minIntervalNs;
+            sink.onSample(readFloat(report, OFFSET_DATA), readFloat(report, OFFSET_DATA + 4),
+                    readFloat(report, OFFSET_DATA + 8), ts);
+            emitted++;
+        }
+        return emitted;
+    }
+
+    /** Reports from {@code from} to {@code to} in the 1..2^32-1 counter space (0 is skipped). */
+    static int distance(int from, int to) {
+        int d = to - from;
+        // Crossing the wrap skips 0, so the raw difference is one too many
+        if (d > 0 && Integer.compareUnsigned(to, from) < 0) d--;
+        else if (d < 0 && Integer.compareUnsigned(to, from) > 0) d++;
+        return d;
+    }
+
+    /** {@code counter} moved by {@code n} reports, skipping 0. */
+    static int advance(int counter, int n) {
+        int c = counter + n;
+        if (n > 0 && Integer.compareUnsigned(c, counter) < 0) c++;
+        else if (n < 0 && Integer.compareUnsigned(c, counter) > 0) c--;
+        if (c == 0) c = (n > 0) ? 1 : -1;
+        return c;
+    }
+
+    // -----------------------------------
+    // Little-endian helpers
+    // -----------------------------------
+    static int readInt(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+    }
+
+    static long readLong(byte[] b, int off) {
+        return (readInt(b, off) & 0xFFFFFFFFL) | (long) readInt(b, off + 4) << 32;
+    }
+
+    static float readFloat(byte[] b, int off) {
+        return Float.intBitsToFloat(readInt(b, off));
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.study111;
+
+import android.hardware.Sensor;
+import android.hardware.SensorDirectChannel;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MemoryFile;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+import java.io.IOException;
+
+/**
+ * Accelerometer ingestion through a SensorDirectChannel backed by a MemoryFile.
+ *
+ * The sensor hub writes reports into shared memory; a poller on the main looper (the
+ * same thread onSensorChanged runs on, so MotionPipeline stays single-threaded) drains
+ * them with {@link DirectReportParser} straight into the sink. No SensorEvent objects.
+ *
+ * This is batching, not zero-copy: MemoryFile only exposes readBytes, so each report
+ * is still copied across JNI, and a poll every {@link #POLL_INTERVAL_MS} adds up to that
+ * much delivery latency. What it saves is the per-event dispatch (one looper message,
+ * SensorEvent and listener call per sample) at high rates. A mapped view would need a
+ * HardwareBuffer channel read through the NDK; the Java API has no mappable direct
+ * channel memory.
+ *
+ * The rate level is the lowest one whose guaranteed minimum rate covers the governor's
+ * period; the parser then decimates to that period.
+ *
+ * {@link #start} returns false when the device/sensor does not support direct
+ * channels or setup fails; the caller then registers a normal listener. A running
+ * channel that delivers nothing for {@link #MAX_EMPTY_POLLS} polls, or that cannot be
+ * reconfigured for a new period, stops itself and calls the fallback.
+ */
+@RequiresApi(Build.VERSION_CODES.O)
+final class DirectSensorReader {
+
+    private static final String TAG = "DirectSensorReader";
+
+    private static final int MIN_RING_SLOTS = 64;  // ~1 s at RATE_NORMAL
+    private static final long POLL_INTERVAL_MS = 100;
+    static final int MAX_EMPTY_POLLS = 10;         // 1 s without a single report
+
+    private final SensorManager sensorManager;
+    private final Sensor sensor;
+    private final DirectReportParser.Sink sink;
+    private final Runnable fallback;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private MemoryFile memory;
+    private SensorDirectChannel channel;
+    private DirectReportParser parser;
+    private int rateLevel;
+    private int pendingPeriodUs = 0;  // rate level change requested during a drain
+    private long lastReceived;
+    private int emptyPolls;
+    private boolean running = false;
+    private boolean draining = false; // sink callbacks may call stop(); release after the drain
+
+    /**
+     * @param fallback run on the main thread after a running channel stopped itself;
+     *                 the caller should register a normal listener instead
+     */
+    DirectSensorReader(SensorManager sensorManager, Sensor sensor, DirectReportParser.Sink sink,
+                       Runnable fallback) {
+        this.sensorManager = sensorManager;
+        this.sensor = sensor;
+        this.sink = sink;
+        this.fallback = fallback;
+    }
+
+    static boolean isSupported(Sensor sensor) {
+        if (sensor == null) return false;
+        return sensor.isDirectChannelTypeSupported(SensorDirectChannel.TYPE_MEMORY_FILE)
+                && sensor.getHighestDirectReportRateLevel() >= SensorDirectChannel.RATE_NORMAL;
+    }
+
+    boolean isRunning() { return running; }
+
+    /**
+     * Lowest rate level that still delivers at least one report per {@code samplingPeriodUs}.
+     * Levels only guarantee 55% of nominal (50 / 200 / 800 Hz), capped at what the sensor offers.
+     */
+    static int rateLevelFor(Sensor sensor, int samplingPeriodUs) {
+        int level;
+        if (samplingPeriodUs >= 2_000_000 / 55) level = SensorDirectChannel.RATE_NORMAL;      // <= 27.5 Hz
+        else if (samplingPeriodUs >= 1_000_000 / 110) level = SensorDirectChannel.RATE_FAST;  // <= 110 Hz
+        else level = SensorDirectChannel.RATE_VERY_FAST;
+        return Math.min(level, sensor.getHighestDirectReportRateLevel());
+    }
+
+    /** Reports per second the hub may write at {@code level} (220% of nominal). */
+    private static int maxRateHz(int level) {
+        switch (level) {
+            case SensorDirectChannel.RATE_VERY_FAST: return 1760;
+            case SensorDirectChannel.RATE_FAST:      return 440;
+            default:                                 return 110;
+        }
+    }
+
+    /** Follow a governor change; the channel is restarted only if the rate level changes. */
+    void setSamplingPeriodUs(int samplingPeriodUs) {
+        if (parser == null) return;
+        parser.setMinIntervalNs(samplingPeriodUs * 1000L);
+        if (rateLevelFor(sensor, samplingPeriodUs) != rateLevel) {
+            pendingPeriodUs = samplingPeriodUs; // picked up by the next poll
+        }
+    }
+
+    /**
+     * Configure the channel and start polling. Reports are decimated to one per
+     * {@code samplingPeriodUs} on average so the pipeline sees the rate it asked for.
+     *
+     * @return false if direct reporting is unavailable (nothing is left running)
+     */
+    boolean start(int samplingPeriodUs) {
+        stop();
+        if (draining) return false; // called from a sink callback; old channel still in use
+        if (!isSupported(sensor)) return false;
+        rateLevel = rateLevelFor(sensor, samplingPeriodUs);
+        // Two polls' worth of reports at the fastest rate the level allows
+        int slots = (int) Math.max(MIN_RING_SLOTS, 2 * maxRateHz(rateLevel) * POLL_INTERVAL_MS / 1000);
+        int ringBytes = slots * DirectReportParser.REPORT_SIZE;
+        try {
+            memory = new MemoryFile("accel_direct", ringBytes);
+            channel = sensorManager.createDirectChannel(memory);
+            int token = channel.configure(sensor, rateLevel);
+            if (token <= 0) {
+                Log.w(TAG, "Direct report configure failed; falling back to listener");
+                stop();
+                return false;
+            }
+            parser = new DirectReportParser(ringBytes, token);
+            parser.setMinIntervalNs(samplingPeriodUs * 1000L);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Direct channel unavailable; falling back to listener", e);
+            stop();
+            return false;
+        }
+        pendingPeriodUs = 0;
+        lastReceived = 0;
+        emptyPolls = 0;
+        running = true;
+        handler.postDelayed(poll, POLL_INTERVAL_MS);
+        return true;
+    }
+
+    /** Stop reporting and release the channel and shared memory. Safe to call repeatedly. */
+    void stop() {
+        handler.removeCallbacks(poll);
+        running = false;
+        if (!draining) release();
+    }
+
+    private void release() {
+        if (parser != null) {
+            Log.d(TAG, "Direct reports: received=" + parser.getReceived() + " lost=" + parser.getLost()
+                    + " torn=" + parser.getTorn() + " decimated=" + parser.getDecimated());
+        }
+        if (channel != null) {
+            try {
+                channel.configure(sensor, SensorDirectChannel.RATE_STOP);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Stopping direct channel failed", e);
+            }
+            channel.close();
+            channel = null;
+        }
+        if (memory != null) {
+            memory.close();
+            memory = null;
+        }
+        parser = null;
+    }
+
+    private final DirectReportParser.Source source = (offset, dst, dstOffset, length) -> {
+        try {
+            memory.readBytes(dst, offset, dstOffset, length);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    };
+
+    private final Runnable poll = new Runnable() {
+        @Override public void run() {
+            if (!running) return;
+            draining = true;
+            try {
+                parser.drain(source, sink);
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "Reading direct channel failed", e);
+            } finally {
+                draining = false;
+            }
+            // The sink may have stopped us (e.g. movement paused the timer)
+            if (!running) {
+                release();
+                return;
+            }
+            if (parser.getReceived() != lastReceived) {
+                lastReceived = parser.getReceived();
+                emptyPolls = 0;
+            } else if (++emptyPolls >= MAX_EMPTY_POLLS) {
+                Log.w(TAG, "Direct channel delivered nothing for " + emptyPolls + " polls; falling back to listener");
+                stop();
+                fallback.run();
+                return;
+            }
+            if (pendingPeriodUs != 0) {
+                if (!start(pendingPeriodUs)) fallback.run(); // start() schedules the next poll
+                return;
+            }
+            handler.postDelayed(this, POLL_INTERVAL_MS);
+        }
+    };
+}
@@ -0,0 +1,264 @@
+package com.example.study111;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Which of the {@link MotionFeatures} outputs the loaded model actually uses.
+ *
+ * {@link #analyze} reads the .tflite flatbuffer and finds the FULLY_CONNECTED layer that
+ * consumes the model input. An input whose weight column equals the weight zero point for
+ * every unit contributes exactly nothing to the accumulator, whatever its value, so it
+ * can be skipped and left at 0 (which quantizes to the input zero point). Only exact
+ * zeros qualify: a merely small weight could still move a rounding boundary, and
+ * predictions must not change.
+ *
+ * The group flags tell {@link MotionFeatures#compute(float[][], FeaturePlan)} which
+ * loops (magnitude sqrt, skew/kurtosis powers, correlations, energies) it can skip.
+ *
+ * Analysis fails closed: anything it doesn't recognise (another first op, shuffled or
+ * sparse weights, odd quantization, a truncated or corrupt file) gives {@link #ALL}.
+ */
+public final class FeaturePlan {
+
+    /** Computes everything; used when the model cannot be analyzed. */
+    public static final FeaturePlan ALL = new FeaturePlan(allTrue(MotionFeatures.NUM_FEATURES));
+
+    private final boolean[] needed;
+    final boolean magnitude;    // |g| per sample, first pass (21, 23, 24, 38 and second-pass |g| stats)
+    final boolean axisSpread;   // var/std per axis (3-5) and what normalizes by it
+    final boolean axisMoments;  // skew/kurt per axis (15-20)
+    final boolean correlation;  // 28-30
+    final boolean axisEnergy;   // rms/energy per axis (12-14, 31-33)
+    final boolean magSecond;    // var/rms/energy of |g| (22, 25, 34) and its moments
+    final boolean magMoments;   // skew/kurt of |g| (26, 27)
+
+    public FeaturePlan(boolean[] needed) {
+        if (needed.length != MotionFeatures.NUM_FEATURES) throw new IllegalArgumentException("plan size");
+        this.needed = needed.clone();
+        axisMoments = any(15, 20);
+        correlation = any(28, 30);
+        axisSpread = any(3, 5) || axisMoments || correlation;
+        axisEnergy = any(12, 14) || any(31, 33);
+        magMoments = any(26, 27);
+        magSecond = needed[22] || needed[25] || needed[34] || magMoments;
+        magnitude = needed[21] || any(23, 24) || needed[38] || magSecond;
+    }
+
+    public boolean isNeeded(int feature) { return needed[feature]; }
+
+    public int neededCount() {
+        int n = 0;
+        for (boolean b : needed) if (b) n++;
+        return n;
+    }
+
+    public boolean isFull() { return neededCount() == needed.length; }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("FeaturePlan ").append(neededCount()).append('/')
+                .append(needed.length).append(" skip=[");
+        boolean first = true;
+        for (int i = 0; i < needed.length; i++) {
+            if (needed[i]) continue;
+            if (!first) sb.append(',');
+            sb.append(i);
+            first = false;
+        }
+        return sb.append(']').toString();
+    }
+
+    private boolean any(int from, int to) {
+        for (int i = from; i <= to; i++) if (needed[i]) return true;
+        return false;
+    }
+
+    private static boolean[] allTrue(int n) {
+        boolean[] b = new boolean[n];
+        for (int i = 0; i < n; i++) b[i] = true;
+        return b;
+    }
+
+    // -----------------------------------
+    // Model analysis
+    // -----------------------------------
+    private static final int OP_FULLY_CONNECTED = 9;
+    private static final int OPTIONS_FULLY_CONNECTED = 8;
+    private static final int WEIGHTS_FORMAT_DEFAULT = 0;
+    private static final int TYPE_FLOAT32 = 0;
+    private static final int TYPE_UINT8 = 3;
+    private static final int TYPE_INT8 = 9;
+
+    /**
+     * Plan for the model in {@code model} (a whole .tflite file; position is ignored).
+     *
+     * @return {@link #ALL} unless the input feeds exactly one FULLY_CONNECTED op with
+     *         constant, dense, row-major weights of a supported type; also when the
+     *         flatbuffer is malformed
+     */
+    public static FeaturePlan analyze(ByteBuffer model, int numFeatures) {
+        if (numFeatures != MotionFeatures.NUM_FEATURES) return ALL;
+        Flat fb = new Flat(model);
+        try {
+            int root = fb.deref(0);
+            int subgraph = fb.vectorTable(fb.field(root, 2), 0);
+            int tensors = fb.field(subgraph, 0);
+            int input = fb.vectorInt(fb.field(subgraph, 1), 0);
+            int inputShape = fb.field(fb.vectorTable(tensors, input), 0);
+            int inputDims = fb.vectorLength(inputShape);
+            if (inputDims == 0 || fb.vectorInt(inputShape, inputDims - 1) != numFeatures) return ALL;
+
+            // The input must be consumed by a single op, and that op must be FC(input, weights, ...)
+            int operators = fb.field(subgraph, 3);
+            int fc = -1;
+            for (int i = 0, n = fb.vectorLength(operators); i < n; i++) {
+                int op = fb.vectorTable(operators, i);
+                int inputs = fb.field(op, 1);
+                for (int k = 0, m = fb.vectorLength(inputs); k < m; k++) {
+                    if (fb.vectorInt(inputs, k) != input) continue;
+                    if (fc != -1 || k != 0) return ALL;
+                    fc = op;
+                }
+            }
+            if (fc == -1) return ALL;
+            int opcode = fb.vectorTable(fb.field(root, 1), fb.scalarInt(fc, 0, 0));
+            int builtin = Math.max(fb.scalarByte(opcode, 0, 0), fb.scalarInt(opcode, 3, 0));
+            if (builtin != OP_FULLY_CONNECTED) return ALL;
+            int options = fb.field(fc, 4);
+            if (options != 0 && (fb.scalarByte(fc, 3, 0) != OPTIONS_FULLY_CONNECTED
+                    || fb.scalarByte(options, 1, WEIGHTS_FORMAT_DEFAULT) != WEIGHTS_FORMAT_DEFAULT)) {
+                return ALL; // shuffled weights are not [units][features]
+            }
+
+            int fcInputs = fb.field(fc, 1);
+            if (fb.vectorLength(fcInputs) < 2) return ALL;
+            int weights = fb.vectorTable(tensors, fb.vectorInt(fcInputs, 1));
+            if (fb.fieldPos(weights, 6) != 0) return ALL; // sparse
+            int shape = fb.field(weights, 0);
+            if (fb.vectorLength(shape) != 2 || fb.vectorInt(shape, 1) != numFeatures) return ALL;
+            int units = fb.vectorInt(shape, 0);
+            if (units <= 0) return ALL;
+            int type = fb.scalarByte(weights, 1, TYPE_FLOAT32);
+
+            int buffer = fb.vectorTable(fb.field(root, 4), fb.scalarInt(weights, 2, 0));
+            int data = fb.field(buffer, 0);
+            int elemBytes = (type == TYPE_FLOAT32) ? 4 : 1;
+            if (type != TYPE_FLOAT32 && type != TYPE_INT8 && type != TYPE_UINT8) return ALL;
+            if (data == 0 || fb.vectorLength(data) != (long) units * numFeatures * elemBytes) return ALL;
+
+            long[] zeroPoints = new long[]{0};
+            int quant = fb.field(weights, 4);
+            if (type != TYPE_FLOAT32) {
+                // Integer weights need one zero point, or one per unit along dimension 0
+                int zp = (quant == 0) ? 0 : fb.field(quant, 3);
+                int n = fb.vectorLength(zp);
+                if (n != 1 && n != units) return ALL;
+                if (n > 1 && fb.scalarInt(quant, 6, 0) != 0) return ALL; // quantized_dimension
+                zeroPoints = new long[n];
+                for (int u = 0; u < n; u++) zeroPoints[u] = fb.vectorLong(zp, u);
+            }
+
+            boolean[] needed = new boolean[numFeatures];
+            int base = data + 4;
+            for (int u = 0; u < units; u++) {
+                long zp = zeroPoints[zeroPoints.length == 1 ? 0 : u];
+                for (int j = 0; j < numFeatures; j++) {
+                    if (needed[j]) continue;
+                    int idx = u * numFeatures + j;
+                    boolean zero;
+                    if (type == TYPE_FLOAT32) {
+                        zero = fb.buf.getFloat(base + idx * 4) == 0f;
+                    } else if (type == TYPE_INT8) {
+                        zero = fb.buf.get(base + idx) == zp;
+                    } else {
+                        zero = (fb.buf.get(base + idx) & 0xFF) == zp;
+                    }
+                    if (!zero) needed[j] = true;
+                }
+            }
+            return new FeaturePlan(needed);
+        } catch (RuntimeException e) {
+            return ALL; // malformed; computing everything is always correct
+        }
+    }
+
+    /**
+     * Scale and zero point of the model input, or null unless it is quantized per tensor
+     * (also when the flatbuffer is malformed).
+     */
+    static float[] inputQuantization(ByteBuffer model) {
+        Flat fb = new Flat(model);
+        try {
+            int root = fb.deref(0);
+            int subgraph = fb.vectorTable(fb.field(root, 2), 0);
+            int input = fb.vectorTable(fb.field(subgraph, 0), fb.vectorInt(fb.field(subgraph, 1), 0));
+            int quant = fb.field(input, 4);
+            if (quant == 0) return null;
+            int scale = fb.field(quant, 2), zp = fb.field(quant, 3);
+            if (fb.vectorLength(scale) != 1 || fb.vectorLength(zp) != 1) return null;
+            return new float[]{fb.vectorFloat(scale, 0), fb.vectorLong(zp, 0)};
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** Just enough flatbuffer reading for the fields above (absolute, little-endian). */
+    private static final class Flat {
+        final ByteBuffer buf;
+
+        Flat(ByteBuffer model) {
+            buf = model.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            buf.clear();
+        }
+
+        /** Target of the uoffset stored at {@code pos}. */
+        int deref(int pos) { return pos + buf.getInt(pos); }
+
+        /** Position of field {@code id} of the table at {@code table}, or 0 if absent. */
+        int fieldPos(int table, int id) {
+            int vtable = table - buf.getInt(table);
+            int vtSize = buf.getShort(vtable) & 0xFFFF;
+            int slot = 4 + 2 * id;
+            if (slot >= vtSize) return 0;
+            int off = buf.getShort(vtable + slot) & 0xFFFF;
+            return off == 0 ? 0 : table + off;
+        }
+
+        /** Referenced table/vector/string of a field, or 0 if absent. */
+        int field(int table, int id) {
+            int p = fieldPos(table, id);
+            return p == 0 ? 0 : deref(p);
+        }
+
+        int scalarInt(int table, int id, int def) {
+            int p = fieldPos(table, id);
+            return p == 0 ? def : buf.getInt(p);
+        }
+
+        int scalarByte(int table, int id, int def) {
+            int p = fieldPos(table, id);
+            return p == 0 ? def : buf.get(p);
+        }
+
+        /** Element count; throws if it can't fit in the buffer, so loops over it stay bounded. */
+        int vectorLength(int vector) {
+            if (vector == 0) return 0;
+            int n = buf.getInt(vector);
+            if (n < 0 || n > buf.limit() - vector - 4) throw new IndexOutOfBoundsException("vector length " + n);
+            return n;
+        }
+
+        int vectorInt(int vector, int i) { return buf.getInt(element(vector, i, 4)); }
+
+        float vectorFloat(int vector, int i) { return buf.getFloat(element(vector, i, 4)); }
+
+        long vectorLong(int vector, int i) { return buf.getLong(element(vector, i, 8)); }
+
+        int vectorTable(int vector, int i) { return deref(element(vector, i, 4)); }
+
+        private int element(int vector, int i, int size) {
+            if (i < 0 || i >= vectorLength(vector)) throw new IndexOutOfBoundsException("index " + i);
+            return vector + 4 + size * i;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.example.study111;
+
+/**
+ * Integer-only variant of {@link MotionFeatures} for low-end cores.
+ *
+ * Samples are int16 fixed point (Q9: 1/512 m/s^2, +-64 m/s^2 range). All per-sample work
+ * is integer:
+ *  - pass 1: sums, min/max, raw second moments and cross products in 64-bit accumulators,
+ *    |g| via a table-interpolated integer square root (no Math.sqrt per sample)
+ *  - pass 2 (centered on the rounded mean): third/fourth powers, rescaled when the
+ *    window's swing could overflow 64 bits
+ * Variances come out exact from the raw sums; std/rms use the same integer square root.
+ * Divisions by n go through a reciprocal table; only the per-window ratios (skew, kurtosis,
+ * correlation) and the final scaling to m/s^2 use a handful of float ops.
+ *
+ * Output layout and units match {@link MotionFeatures#compute}. On the same Q9 samples the
+ * two agree to within one step of the model's input quantization. On a resting phone the
+ * Q9 rounding of the input itself reshapes the noise, so skew and kurtosis of the Q9
+ * samples can sit many steps away from the float result. Callers can therefore pass each
+ * sample's {@link #residual} (the next 8 bits below Q9): channels whose range is under
+ * {@link #QUIET_RANGE} then get their centered moments redone from Q9 + residual, which
+ * brings every feature back within one step. Reuses its sample buffers, so an instance
+ * must stay on one thread.
+ */
+public final class FixedPointFeatures {
+
+    public static final int FRAC_BITS = 9;
+    private static final float ONE = 1 << FRAC_BITS;
+    private static final float ONE_SQ = (float) (1L << (2 * FRAC_BITS));
+    private static final int VAR_EXTRA = 8;  // variance in Q26, std in Q13
+    private static final float ONE_HI = 1 << (FRAC_BITS + VAR_EXTRA / 2);
+
+    /** Channels with a Q9 range below this (0.5 m/s^2) get their shape moments refined. */
+    static final int QUIET_RANGE = 1 << 8;
+    private static final int FINE_BITS = 12;   // refined deviations span about this many bits
+    /** Fractional bits below Q9 carried by {@link #residual}. */
+    public static final int RESIDUAL_BITS = 8;
+
+    /** Largest window handled; keeps every 64-bit accumulator far from overflow. */
+    public static final int MAX_WINDOW = 256;
+
+    private static final int RECIP_BITS = 24;
+    private static final long[] RECIP = new long[MAX_WINDOW + 1];   // round(2^24 / n)
+    private static final float[] RECIP_F = new float[MAX_WINDOW + 1];
+
+    // sqrt(i) in Q16 for i in [0, 1024]; larger arguments are scaled into [256, 1024)
+    private static final int SQRT_BITS = 10;
+    private static final int[] SQRT_Q16 = new int[(1 << SQRT_BITS) + 1];
+    private static final int[] SQRT_SLOPE = new int[1 << SQRT_BITS];   // SQRT_Q16[i + 1] - SQRT_Q16[i]
+
+    static {
+        for (int n = 1; n <= MAX_WINDOW; n++) {
+            RECIP[n] = ((1L << RECIP_BITS) + n / 2) / n;
+            RECIP_F[n] = 1f / n;
+        }
+        for (int i = 0; i < SQRT_Q16.length; i++) {
+            SQRT_Q16[i] = (int) Math.round(Math.sqrt(i) * 65536.0);
+        }
+        for (int i = 0; i < SQRT_SLOPE.length; i++) SQRT_SLOPE[i] = SQRT_Q16[i + 1] - SQRT_Q16[i];
+    }
+
+    private final short[] xs, ys, zs;
+    private final byte[] rxs, rys, rzs;
+    private final int[] mags;
+    private final int[] fine; // refined deviations of one quiet channel
+    // Per-channel results of sums()/moments(): X, Y, Z, |g|
+    private final long[] s1 = new long[4], s2 = new long[4], c3 = new long[4], c4 = new long[4];
+    private final int[] lo = new int[4], hi = new int[4];
+    private final long[] cross = new long[3]; // XY, YZ, XZ
+
+    public FixedPointFeatures() {
+        this(MAX_WINDOW);
+    }
+
+    public FixedPointFeatures(int maxWindow) {
+        if (maxWindow < 1 || maxWindow > MAX_WINDOW) throw new IllegalArgumentException("window size");
+        xs = new short[maxWindow];
+        ys = new short[maxWindow];
+        zs = new short[maxWindow];
+        rxs = new byte[maxWindow];
+        rys = new byte[maxWindow];
+        rzs = new byte[maxWindow];
+        mags = new int[maxWindow];
+        fine = new int[maxWindow];
+    }
+
+    /** m/s^2 -> Q9, saturating at the int16 range. */
+    public static short toFixed(float v) {
+        float q = v * ONE + (v < 0f ? -0.5f : 0.5f); // round half away; the cast truncates
+        if (q > Short.MAX_VALUE) return Short.MAX_VALUE;
+        if (q < Short.MIN_VALUE) return Short.MIN_VALUE;
+        return (short) (int) q;
+    }
+
+    /**
+     * What {@code v} has below its Q9 value {@code q} (= toFixed(v)), in Q17. Within
+     * +-1/2 Q9 step, so it fits a byte once +128 is clipped to +127.
+     */
+    public static byte residual(float v, short q) {
+        int r = Math.round(v * (1 << (FRAC_BITS + RESIDUAL_BITS))) - (q << RESIDUAL_BITS);
+        return (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, r));
+    }
+
+    /**
+     * Convenience for float windows (tests, tools): converts each value once into the reused
+     * buffers. The pipeline stores Q9 + residual on arrival and calls the int16 overload.
+     */
+    public float[] compute(float[][] w) {
+        if (w == null || w.length == 0) return new float[MotionFeatures.NUM_FEATURES];
+        int n = Math.min(w.length, xs.length);
+        int off = w.length - n; // keep the most recent samples
+        for (int i = 0; i < n; i++) {
+            float[] s = w[off + i];
+            split(toFine(s[0]), xs, rxs, i);
+            split(toFine(s[1]), ys, rys, i);
+            split(toFine(s[2]), zs, rzs, i);
+        }
+        return compute(xs, ys, zs, rxs, rys, rzs, n);
+    }
+
+    private static final int FINE_MIN = Short.MIN_VALUE << RESIDUAL_BITS;
+    private static final int FINE_MAX = (Short.MAX_VALUE << RESIDUAL_BITS) + Byte.MAX_VALUE;
+
+    /** m/s^2 -> Q17 in a single rounding, clamped so it splits into int16 + residual. */
+    private static int toFine(float v) {
+        float q = v * (1 << (FRAC_BITS + RESIDUAL_BITS)) + (v < 0f ? -0.5f : 0.5f);
+        if (q >= FINE_MAX) return FINE_MAX;
+        if (q <= FINE_MIN) return FINE_MIN;
+        return (int) q;
+    }
+
+    /** Q17 -> Q9 (rounded) at {@code q[i]} and what is left over at {@code r[i]}. */
+    private static void split(int fine, short[] q, byte[] r, int i) {
+        int c = (fine + (1 << (RESIDUAL_BITS - 1))) >> RESIDUAL_BITS;
+        q[i] = (short) c;
+        r[i] = (byte) (fine - (c << RESIDUAL_BITS));
+    }
+
+    /** Features of the first {@code n} Q9 samples, without refining quiet channels. */
+    public float[] compute(short[] x, short[] y, short[] z, int n) {
+        return compute(x, y, z, null, null, null, n);
+    }
+
+    /**
+     * Features of the first {@code n} Q9 samples (n <= the constructor's maxWindow).
+     * With residuals ({@link #residual}; null for none) quiet channels are refined.
+     */
+    public float[] compute(short[] x, short[] y, short[] z, byte[] rx, byte[] ry, byte[] rz, int n) {
+        float[] f = new float[MotionFeatures.NUM_FEATURES];
+        if (n <= 0) return f;
+        if (n > mags.length) throw new IllegalArgumentException("window too long");
+
+        // ---- pass 1: raw sums (Q9 sums, Q18 second moments) ----
+        // One short loop per channel keeps every accumulator in a register.
+        sums(x, n, 0);
+        sums(y, n, 1);
+        sums(z, n, 2);
+        long sx = s1[0], sy = s1[1], sz = s1[2];
+        long sxx = s2[0], syy = s2[1], szz = s2[2];
+        int minX = lo[0], minY = lo[1], minZ = lo[2];
+        int maxX = hi[0], maxY = hi[1], maxZ = hi[2];
+
+        crossAndMagnitude(x, y, z, n);
+        long sxy = cross[0], syz = cross[1], sxz = cross[2];
+        sums(mags, n);
+        long sm = s1[3], smm = s2[3];
+        int minM = lo[3], maxM = hi[3];
+
+        long nn = (long) n * n;
+        // Variance with VAR_EXTRA more fractional bits (Q26) so small std keeps its precision
+        long varX = ((n * sxx - sx * sx) << VAR_EXTRA) / nn;
+        long varY = ((n * syy - sy * sy) << VAR_EXTRA) / nn;
+        long varZ = ((n * szz - sz * sz) << VAR_EXTRA) / nn;
+        long varM = Math.max(0, ((n * smm - sm * sm) << VAR_EXTRA) / nn);
+        int stdX = sqrt(varX), stdY = sqrt(varY), stdZ = sqrt(varZ), stdM = sqrt(varM); // Q13
+
+        // ---- pass 2: third/fourth moments around the rounded mean (offset removed below) ----
+        int mx = mean(sx, n), my = mean(sy, n), mz = mean(sz, n), mm = mean(sm, n);
+        int shX = momentShift(maxX - mx, mx - minX, n), shY = momentShift(maxY - my, my - minY, n);
+        int shZ = momentShift(maxZ - mz, mz - minZ, n), shM = momentShift(maxM - mm, mm - minM, n);
+        moments(x, n, mx, shX, 0);
+        moments(y, n, my, shY, 1);
+        moments(z, n, mz, shZ, 2);
+        moments(mags, n, mm, shM, 3);
+        long c3x = c3[0], c3y = c3[1], c3z = c3[2], c3m = c3[3];
+        long c4x = c4[0], c4y = c4[1], c4z = c4[2], c4m = c4[3];
+
+        final float invN = RECIP_F[n];
+        int i = 0;
+        f[i++] = sx * invN / ONE;  f[i++] = sy * invN / ONE;  f[i++] = sz * invN / ONE;
+        f[i++] = stdX / ONE_HI;    f[i++] = stdY / ONE_HI;    f[i++] = stdZ / ONE_HI;
+        f[i++] = minX / ONE;       f[i++] = minY / ONE;       f[i++] = minZ / ONE;
+        f[i++] = maxX / ONE;       f[i++] = maxY / ONE;       f[i++] = maxZ / ONE;
+        f[i++] = sqrt(div(sxx, n)) / ONE;
+        f[i++] = sqrt(div(syy, n)) / ONE;
+        f[i++] = sqrt(div(szz, n)) / ONE;
+        f[i++] = skew(c3x, sxx, sx, mx, n, stdX);
+        f[i++] = skew(c3y, syy, sy, my, n, stdY);
+        f[i++] = skew(c3z, szz, sz, mz, n, stdZ);
+        f[i++] = kurt(c4x, shX, c3x, sxx, sx, mx, n, varX);
+        f[i++] = kurt(c4y, shY, c3y, syy, sy, my, n, varY);
+        f[i++] = kurt(c4z, shZ, c3z, szz, sz, mz, n, varZ);
+        f[i++] = sm * invN / ONE;
+        f[i++] = stdM / ONE_HI;
+        f[i++] = minM / ONE;
+        f[i++] = maxM / ONE;
+        long energyM = sxx + syy + szz; // sum of |g|^2 needs no square roots
+        f[i++] = sqrt(div(energyM, n)) / ONE;
+        f[i++] = skew(c3m, smm, sm, mm, n, stdM);
+        f[i++] = kurt(c4m, shM, c3m, smm, sm, mm, n, varM);
+        f[i++] = corr(n * sxy - sx * sy, stdX, stdY, nn);
+        f[i++] = corr(n * syz - sy * sz, stdY, stdZ, nn);
+        f[i++] = corr(n * sxz - sx * sz, stdX, stdZ, nn);
+        f[i++] = sxx / ONE_SQ;
+        f[i++] = syy / ONE_SQ;
+        f[i++] = szz / ONE_SQ;
+        f[i++] = energyM / ONE_SQ;
+        f[i++] = (maxX - minX) / ONE;
+        f[i++] = (maxY - minY) / ONE;
+        f[i++] = (maxZ - minZ) / ONE;
+        f[i++] = (maxM - minM) / ONE;
+        if (rx != null) refineQuiet(x, y, z, rx, ry, rz, n, f);
+        return f;
+    }
+
+    // -----------------------------------
+    // Quiet channels
+    // -----------------------------------
+
+    /**
+     * Recompute skew/kurtosis of quiet channels from Q9 + residual in Q(9 + k), centered
+     * on the Q9 mean. Uses the per-channel sums compute() left behind; saturated channels
+     * are left alone.
+     */
+    private void refineQuiet(short[] x, short[] y, short[] z, byte[] rx, byte[] ry, byte[] rz,
+                             int n, float[] f) {
+        int loM = lo[3], hiM = hi[3];
+        long sumM = s1[3];
+        boolean saturated = false;
+        for (int ch = 0; ch < 3; ch++) {
+            saturated |= lo[ch] == Short.MIN_VALUE || hi[ch] == Short.MAX_VALUE;
+        }
+        for (int ch = 0; ch < 3; ch++) {
+            int range = hi[ch] - lo[ch]; // 0 too: equal Q9 codes can hide residual variation
+            if (range >= QUIET_RANGE || lo[ch] == Short.MIN_VALUE || hi[ch] == Short.MAX_VALUE) continue;
+            short[] q = ch == 0 ? x : ch == 1 ? y : z;
+            byte[] r = ch == 0 ? rx : ch == 1 ? ry : rz;
+            int k = Math.min(RESIDUAL_BITS, FINE_BITS - bits(range));
+            int base = mean(s1[ch], n) << k;
+            for (int i = 0; i < n; i++) fine[i] = fineSample(q, r, i, k) - base;
+            shape(n, f, 15 + ch, 18 + ch);
+        }
+        int range = hiM - loM;
+        if (range >= QUIET_RANGE || loM <= 0 || saturated) return;
+        // |g| - G from the exact squared magnitude S: with q = (S - G^2) / 2G,
+        // |g| - G = q - (|g| - G)^2 / 2G ~= q - q^2 / 2G (deviations are ~1e-3 G here)
+        int k = Math.min(RESIDUAL_BITS, FINE_BITS - bits(range));
+        long g = (long) mean(sumM, n) << k, g2 = g * g, twoG = 2 * g;
+        for (int i = 0; i < n; i++) {
+            long a = fineSample(x, rx, i, k), b = fineSample(y, ry, i, k), c = fineSample(z, rz, i, k);
+            long q = Math.floorDiv(a * a + b * b + c * c - g2 + g, twoG);
+            fine[i] = (int) (q - Math.floorDiv(q * q + g, twoG));
+        }
+        shape(n, f, 26, 27);
+    }
+
+    /** Sample {@code i} in Q(9 + k) from its Q9 value and residual (k <= RESIDUAL_BITS). */
+    private static int fineSample(short[] q, byte[] r, int i, int k) {
+        int v = (q[i] << RESIDUAL_BITS) + r[i];
+        int drop = RESIDUAL_BITS - k;
+        return drop == 0 ? v : (v + (1 << (drop - 1))) >> drop;
+    }
+
+    /** Skew and kurtosis of {@link #fine} (|values| < 2^14, so every sum fits). */
+    private void shape(int n, float[] f, int skewIdx, int kurtIdx) {
+        sums(fine, n);
+        long sum = s1[3], sq = s2[3];
+        long var = ((n * sq - sum * sum) << VAR_EXTRA) / ((long) n * n);
+        int m = mean(sum, n);
+        int sh = momentShift(hi[3] - m, m - lo[3], n);
+        moments(fine, n, m, sh, 3);
+        f[skewIdx] = skew(c3[3], sq, sum, m, n, sqrt(var));
+        f[kurtIdx] = kurt(c4[3], sh, c3[3], sq, sum, m, n, var);
+    }
+
+    private static int bits(int v) {
+        return 32 - Integer.numberOfLeadingZeros(v);
+    }
+
+    // -----------------------------------
+    // Helpers
+    // -----------------------------------
+
+    private void sums(short[] v, int n, int ch) {
+        int sum = 0, min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        long sq = 0;
+        for (int i = 0; i < n; i++) {
+            int a = v[i];
+            sum += a;
+            sq += a * a;
+            if (a < min) min = a;
+            if (a > max) max = a;
+        }
+        s1[ch] = sum; s2[ch] = sq; lo[ch] = min; hi[ch] = max;
+    }
+
+    /** Cross products and |g| per sample (into {@link #mags}). */
+    private void crossAndMagnitude(short[] x, short[] y, short[] z, int n) {
+        long sxy = 0, syz = 0, sxz = 0;
+        for (int i = 0; i < n; i++) {
+            int a = x[i], b = y[i], c = z[i];
+            sxy += a * b; syz += b * c; sxz += a * c; // |products| < 2^30
+            mags[i] = sqrt((long) a * a + (long) b * b + (long) c * c);
+        }
+        cross[0] = sxy; cross[1] = syz; cross[2] = sxz;
+    }
+
+    private void sums(int[] v, int n) {
+        long sum = 0, sq = 0;
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            int a = v[i];
+            sum += a;
+            sq += (long) a * a;
+            if (a < min) min = a;
+            if (a > max) max = a;
+        }
+        s1[3] = sum; s2[3] = sq; lo[3] = min; hi[3] = max;
+    }
+
+    private void moments(short[] v, int n, int mean, int shift, int ch) {
+        long m3 = 0, m4 = 0;
+        for (int i = 0; i < n; i++) {
+            long d = v[i] - mean;
+            long d2 = d * d;
+            m3 += d2 * d;
+            d2 >>= shift;
+            m4 += d2 * d2;
+        }
+        c3[ch] = m3; c4[ch] = m4;
+    }
+
+    private void moments(int[] v, int n, int mean, int shift, int ch) {
+        long m3 = 0, m4 = 0;
+        for (int i = 0; i < n; i++) {
+            long d = v[i] - mean;
+            long d2 = d * d;
+            m3 += d2 * d;
+            d2 >>= shift;
+            m4 += d2 * d2;
+        }
+        c3[ch] = m3; c4[ch] = m4;
+    }
+
+    /** Rounded mean via the reciprocal table (|sum| < 2^23, so the product fits). */
+    private static int mean(long sum, int n) {
+        return (int) ((sum * RECIP[n] + (1L << (RECIP_BITS - 1))) >> RECIP_BITS);
+    }
+
+    /** Non-negative sum / n; the table covers every realistic window, long division the rest. */
+    private static long div(long sum, int n) {
+        return sum < (1L << 38) ? (sum * RECIP[n]) >> RECIP_BITS : sum / n;
+    }
+
+    /** Right shift for squared deviations so n * (d^2 >> s)^2 stays below 2^62. */
+    private static int momentShift(int up, int down, int n) {
+        int d = Math.max(up, down);
+        if (d <= 0) return 0;
+        int bits = 64 - Long.numberOfLeadingZeros((long) d * d);
+        int nBits = 32 - Integer.numberOfLeadingZeros(n);
+        int excess = 2 * bits + nBits - 62;
+        return excess <= 0 ? 0 : (excess + 1) / 2;
+    }
+
+    // Skew/kurtosis: the pass-2 sums are centered on the rounded mean m; the sub-LSB offset
+    // d = mean - m is removed with the binomial expansion (sum (e - d)^k, sum e = n*d),
+    // otherwise it biases skew by about 3d/std.
+
+    private static float skew(long c3, long s2, long s1, int m, int n, int stdHi) {
+        if (stdHi <= 0) return 0f;
+        long c2 = s2 - 2L * m * s1 + (long) n * m * m; // sum e^2, exact
+        float d = (s1 - (long) n * m) * RECIP_F[n];
+        float m3 = c3 - 3f * d * c2 + 2f * n * d * d * d;
+        float std = stdHi / (float) (1 << (VAR_EXTRA / 2)); // Q9
+        return m3 * RECIP_F[n] / (std * std * std);
+    }
+
+    private static float kurt(long c4, int shift, long c3, long s2, long s1, int m, int n, long varHi) {
+        if (varHi <= 0) return 0f;
+        long c2 = s2 - 2L * m * s1 + (long) n * m * m;
+        float d = (s1 - (long) n * m) * RECIP_F[n];
+        float d2 = d * d;
+        float m4 = (float) c4 * (1L << (2 * shift)) - 4f * d * c3 + 6f * d2 * c2 - 3f * n * d2 * d2;
+        float var = varHi / (float) (1 << VAR_EXTRA); // Q18
+        return m4 * RECIP_F[n] / (var * var);
+    }
+
+    private static float corr(long nCov, int stdA, int stdB, long nn) {
+        if (stdA <= 0 || stdB <= 0) return 0f;
+        return nCov * (float) (1 << VAR_EXTRA) / ((float) nn * stdA * stdB); // Q26 / Q26
+    }
+
+    /**
+     * Rounded integer square root of a non-negative value below 2^40: table lookup on the
+     * top bits plus linear interpolation (relative error well under 1e-5).
+     */
+    static int sqrt(long v) {
+        if (v <= 0) return 0;
+        if (v < (1 << SQRT_BITS)) return (SQRT_Q16[(int) v] + 0x8000) >> 16;
+        // Even shift that brings v into [256, 1024)
+        int bits = 64 - Long.numberOfLeadingZeros(v);
+        int shift = (bits - SQRT_BITS + 1) & ~1;
+        int idx = (int) (v >>> shift);
+        long frac = v & ((1L << shift) - 1);
+        long q16 = SQRT_Q16[idx] + ((SQRT_SLOPE[idx] * frac) >> shift);
+        int half = shift >> 1;
+        return (int) ((q16 + (1L << (15 - half))) >> (16 - half));
+    }
+}
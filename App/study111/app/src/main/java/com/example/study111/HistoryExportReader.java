@@ -0,0 +1,191 @@
+package com.example.study111;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reader for files written by {@link HistoryExporter}.
+ *
+ * Loads only the footer index on open; range queries seek straight to the row
+ * groups whose [minTimeMs, maxTimeMs] overlap the requested range and decode
+ * them one at a time into reused buffers.
+ */
+public final class HistoryExportReader implements Closeable {
+
+    public interface EventVisitor {
+        void onEvent(long timeMs, byte type, int value);
+    }
+
+    public interface MotionVisitor {
+        void onSample(long timeMs, float x, float y, float z);
+    }
+
+    private final RandomAccessFile raf;
+    private final Inflater inflater = new Inflater();
+
+    // Footer index
+    private final byte[] idxTable;
+    private final int[] idxRows;
+    private final long[] idxMin, idxMax, idxOffset;
+
+    // Reused decode buffers
+    private final byte[][] cols = new byte[4][];
+    private final int[] colLens = new int[4];
+    private byte[] compressed = new byte[4096];
+    private final int[] pos = new int[4];
+
+    private int groupsRead;
+
+    public HistoryExportReader(File file) throws IOException {
+        raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() < 8 + 4 + 12 || raf.readInt() != HistoryExporter.MAGIC) {
+                throw new IOException("Not a history export: " + file);
+            }
+            int version = raf.readInt();
+            if (version != HistoryExporter.VERSION) throw new IOException("Unsupported version " + version);
+
+            raf.seek(raf.length() - 12);
+            long footer = raf.readLong();
+            if (raf.readInt() != HistoryExporter.MAGIC) throw new IOException("Truncated history export");
+
+            raf.seek(footer);
+            int groups = raf.readInt();
+            idxTable = new byte[groups];
+            idxRows = new int[groups];
+            idxMin = new long[groups];
+            idxMax = new long[groups];
+            idxOffset = new long[groups];
+            for (int g = 0; g < groups; g++) {
+                idxTable[g] = raf.readByte();
+                idxRows[g] = raf.readInt();
+                idxMin[g] = raf.readLong();
+                idxMax[g] = raf.readLong();
+                idxOffset[g] = raf.readLong();
+            }
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    public int getGroupCount() { return idxRows.length; }
+    /** Row groups decoded so far (for checking that range queries skip data). */
+    public int getGroupsRead() { return groupsRead; }
+
+    public long getEventCount()  { return countRows(HistoryExporter.TABLE_EVENTS); }
+    public long getMotionCount() { return countRows(HistoryExporter.TABLE_MOTION); }
+
+    /** Visit events with fromMs <= time <= toMs. */
+    public void readEvents(long fromMs, long toMs, EventVisitor v) throws IOException {
+        for (int g = 0; g < idxRows.length; g++) {
+            if (idxTable[g] != HistoryExporter.TABLE_EVENTS || !overlaps(g, fromMs, toMs)) continue;
+            int rows = loadGroup(g, 3);
+            byte[] time = cols[0], type = cols[1], value = cols[2];
+            resetPos();
+            long t = 0;
+            for (int r = 0; r < rows; r++) {
+                t += HistoryExporter.unzigzag(readVarLong(time, 0));
+                byte ty = type[pos[1]++];
+                int val = (int) HistoryExporter.unzigzag(readVarLong(value, 2));
+                if (t >= fromMs && t <= toMs) v.onEvent(t, ty, val);
+            }
+        }
+    }
+
+    /** Visit motion samples with fromMs <= time <= toMs. */
+    public void readMotion(long fromMs, long toMs, MotionVisitor v) throws IOException {
+        for (int g = 0; g < idxRows.length; g++) {
+            if (idxTable[g] != HistoryExporter.TABLE_MOTION || !overlaps(g, fromMs, toMs)) continue;
+            int rows = loadGroup(g, 4);
+            resetPos();
+            long t = 0;
+            int bx = 0, by = 0, bz = 0;
+            for (int r = 0; r < rows; r++) {
+                t += HistoryExporter.unzigzag(readVarLong(cols[0], 0));
+                bx ^= (int) readVarLong(cols[1], 1);
+                by ^= (int) readVarLong(cols[2], 2);
+                bz ^= (int) readVarLong(cols[3], 3);
+                if (t >= fromMs && t <= toMs) {
+                    v.onSample(t, Float.intBitsToFloat(bx), Float.intBitsToFloat(by), Float.intBitsToFloat(bz));
+                }
+            }
+        }
+    }
+
+    @Override public void close() throws IOException {
+        inflater.end();
+        raf.close();
+    }
+
+    // -----------------------------------
+    // Helpers
+    // -----------------------------------
+    private boolean overlaps(int g, long fromMs, long toMs) {
+        return idxMax[g] >= fromMs && idxMin[g] <= toMs;
+    }
+
+    private long countRows(byte table) {
+        long n = 0;
+        for (int g = 0; g < idxRows.length; g++) if (idxTable[g] == table) n += idxRows[g];
+        return n;
+    }
+
+    private int loadGroup(int g, int expectedCols) throws IOException {
+        raf.seek(idxOffset[g]);
+        byte table = raf.readByte();
+        int rows = raf.readInt();
+        raf.readLong(); // min
+        raf.readLong(); // max
+        int numCols = raf.readUnsignedByte();
+        if (table != idxTable[g] || rows != idxRows[g] || numCols != expectedCols) {
+            throw new IOException("Corrupt row group " + g);
+        }
+        for (int c = 0; c < numCols; c++) {
+            int rawLen = raf.readInt();
+            int compLen = raf.readInt();
+            if (compressed.length < compLen) compressed = new byte[compLen];
+            raf.readFully(compressed, 0, compLen);
+            if (cols[c] == null || cols[c].length < rawLen) cols[c] = new byte[Math.max(rawLen, 4096)];
+            inflater.reset();
+            inflater.setInput(compressed, 0, compLen);
+            try {
+                int n = 0;
+                while (n < rawLen) {
+                    int k = inflater.inflate(cols[c], n, rawLen - n);
+                    if (k == 0 && (inflater.finished() || inflater.needsInput())) break;
+                    n += k;
+                }
+                if (n != rawLen) throw new IOException("Short column in row group " + g);
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt column in row group " + g, e);
+            }
+            colLens[c] = rawLen;
+        }
+        groupsRead++;
+        return rows;
+    }
+
+    private void resetPos() {
+        pos[0] = pos[1] = pos[2] = pos[3] = 0;
+    }
+
+    private long readVarLong(byte[] buf, int col) {
+        long v = 0;
+        int shift = 0;
+        int p = pos[col];
+        int end = colLens[col];
+        while (p < end) {
+            byte b = buf[p++];
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+            shift += 7;
+        }
+        pos[col] = p;
+        return v;
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.study111;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Streams {@link HistoryStore} contents into a compressed, chunked columnar file.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *  "SFCH" int version
+ *  row group*:
+ *    byte table  int rows  long minTimeMs  long maxTimeMs  byte columns
+ *    column*: int rawLen  int compressedLen  byte[compressedLen] (deflate)
+ *  footer (row-group index):
+ *    int groups
+ *    group*: byte table  int rows  long minTimeMs  long maxTimeMs  long offset
+ *    long footerOffset  "SFCH"
+ * </pre>
+ * Columns:
+ *  events : time (zigzag varint delta), type (byte), value (zigzag varint)
+ *  motion : time (zigzag varint delta), x/y/z (float bits XOR previous, varint)
+ *
+ * At most {@link #ROWS_PER_GROUP} rows are buffered at a time, so memory does not
+ * grow with history size (only the index grows, by one 29-byte entry per group).
+ * Read back with {@link HistoryExportReader}.
+ */
+public final class HistoryExporter {
+
+    static final int MAGIC = 0x53464348; // "SFCH"
+    static final int VERSION = 1;
+    static final byte TABLE_EVENTS = 1;
+    static final byte TABLE_MOTION = 2;
+    static final int ROWS_PER_GROUP = 4096;
+
+    public interface ProgressListener {
+        void onProgress(long rowsDone, long rowsTotal);
+    }
+
+    private final HistoryStore store;
+
+    // Reused per group
+    private final ColumnBuffer[] cols = {
+            new ColumnBuffer(), new ColumnBuffer(), new ColumnBuffer(), new ColumnBuffer()
+    };
+    private final ColumnBuffer compressed = new ColumnBuffer();
+    private Deflater deflater;
+
+    // Row-group index
+    private byte[] idxTable = new byte[16];
+    private int[] idxRows = new int[16];
+    private long[] idxMin = new long[16], idxMax = new long[16], idxOffset = new long[16];
+    private int groups;
+
+    public HistoryExporter(HistoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Export everything currently in the store (snapshot of row counts at call time).
+     * Written to a temp file and renamed into place, so {@code out} is never left partial.
+     *
+     * @return rows written
+     */
+    public long export(File out, ProgressListener progress) throws IOException {
+        File tmp = new File(out.getPath() + ".tmp");
+        boolean ok = false;
+        try {
+            long rows = write(tmp, progress);
+            if (!tmp.renameTo(out)) throw new IOException("Cannot rename " + tmp + " to " + out);
+            ok = true;
+            return rows;
+        } finally {
+            if (!ok) tmp.delete();
+        }
+    }
+
+    private long write(File out, ProgressListener progress) throws IOException {
+        store.flush();
+        long eventRows = store.eventCount();
+        long motionRows = store.motionCount();
+        long total = eventRows + motionRows;
+        groups = 0;
+        deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try (CountingOutputStream os = new CountingOutputStream(
+                new BufferedOutputStream(new FileOutputStream(out), 64 * 1024))) {
+            writeInt(os, MAGIC);
+            writeInt(os, VERSION);
+
+            long done = 0;
+            try (HistoryStore.EventCursor c = store.openEvents(eventRows)) {
+                done = writeEvents(os, c, done, total, progress);
+            }
+            try (HistoryStore.MotionCursor c = store.openMotion(motionRows)) {
+                done = writeMotion(os, c, done, total, progress);
+            }
+
+            long footer = os.count;
+            writeInt(os, groups);
+            for (int g = 0; g < groups; g++) {
+                os.write(idxTable[g]);
+                writeInt(os, idxRows[g]);
+                writeLong(os, idxMin[g]);
+                writeLong(os, idxMax[g]);
+                writeLong(os, idxOffset[g]);
+            }
+            writeLong(os, footer);
+            writeInt(os, MAGIC);
+            if (progress != null) progress.onProgress(done, total);
+            return done;
+        } finally {
+            deflater.end();
+            deflater = null;
+        }
+    }
+
+    private long writeEvents(CountingOutputStream os, HistoryStore.EventCursor c,
+                             long done, long total, ProgressListener progress) throws IOException {
+        ColumnBuffer time = cols[0], type = cols[1], value = cols[2];
+        int rows = 0;
+        long prev = 0, min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        while (c.next()) {
+            if (rows == 0) { time.clear(); type.clear(); value.clear(); prev = 0; min = Long.MAX_VALUE; max = Long.MIN_VALUE; }
+            time.writeVarLong(zigzag(c.timeMs - prev));
+            prev = c.timeMs;
+            type.writeByte(c.type);
+            value.writeVarLong(zigzag(c.value));
+            if (c.timeMs < min) min = c.timeMs;
+            if (c.timeMs > max) max = c.timeMs;
+            if (++rows == ROWS_PER_GROUP) {
+                writeGroup(os, TABLE_EVENTS, rows, min, max, 3);
+                done += rows;
+                rows = 0;
+                if (progress != null) progress.onProgress(done, total);
+            }
+        }
+        if (rows > 0) {
+            writeGroup(os, TABLE_EVENTS, rows, min, max, 3);
+            done += rows;
+            if (progress != null) progress.onProgress(done, total);
+        }
+        return done;
+    }
+
+    private long writeMotion(CountingOutputStream os, HistoryStore.MotionCursor c,
+                             long done, long total, ProgressListener progress) throws IOException {
+        ColumnBuffer time = cols[0], xs = cols[1], ys = cols[2], zs = cols[3];
+        int rows = 0;
+        long prev = 0, min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        int px = 0, py = 0, pz = 0;
+        while (c.next()) {
+            if (rows == 0) {
+                time.clear(); xs.clear(); ys.clear(); zs.clear();
+                prev = 0; px = 0; py = 0; pz = 0;
+                min = Long.MAX_VALUE; max = Long.MIN_VALUE;
+            }
+            time.writeVarLong(zigzag(c.timeMs - prev));
+            prev = c.timeMs;
+            int bx = Float.floatToRawIntBits(c.x), by = Float.floatToRawIntBits(c.y), bz = Float.floatToRawIntBits(c.z);
+            xs.writeVarLong((bx ^ px) & 0xFFFFFFFFL); px = bx;
+            ys.writeVarLong((by ^ py) & 0xFFFFFFFFL); py = by;
+            zs.writeVarLong((bz ^ pz) & 0xFFFFFFFFL); pz = bz;
+            if (c.timeMs < min) min = c.timeMs;
+            if (c.timeMs > max) max = c.timeMs;
+            if (++rows == ROWS_PER_GROUP) {
+                writeGroup(os, TABLE_MOTION, rows, min, max, 4);
+                done += rows;
+                rows = 0;
+                if (progress != null) progress.onProgress(done, total);
+            }
+        }
+        if (rows > 0) {
+            writeGroup(os, TABLE_MOTION, rows, min, max, 4);
+            done += rows;
+            if (progress != null) progress.onProgress(done, total);
+        }
+        return done;
+    }
+
+    private void writeGroup(CountingOutputStream os, byte table, int rows, long min, long max,
+                            int numCols) throws IOException {
+        addIndex(table, rows, min, max, os.count);
+        os.write(table);
+        writeInt(os, rows);
+        writeLong(os, min);
+        writeLong(os, max);
+        os.write(numCols);
+        for (int i = 0; i < numCols; i++) {
+            ColumnBuffer col = cols[i];
+            deflate(col);
+            writeInt(os, col.len);
+            writeInt(os, compressed.len);
+            os.write(compressed.buf, 0, compressed.len);
+        }
+    }
+
+    private void deflate(ColumnBuffer col) {
+        deflater.reset();
+        deflater.setInput(col.buf, 0, col.len);
+        deflater.finish();
+        compressed.clear();
+        while (!deflater.finished()) {
+            compressed.ensure(compressed.len + 4096);
+            compressed.len += deflater.deflate(compressed.buf, compressed.len, compressed.buf.length - compressed.len);
+        }
+    }
+
+    private void addIndex(byte table, int rows, long min, long max, long offset) {
+        if (groups == idxRows.length) {
+            int n = groups * 2;
+            idxTable = Arrays.copyOf(idxTable, n);
+            idxRows = Arrays.copyOf(idxRows, n);
+            idxMin = Arrays.copyOf(idxMin, n);
+            idxMax = Arrays.copyOf(idxMax, n);
+            idxOffset = Arrays.copyOf(idxOffset, n);
+        }
+        idxTable[groups] = table;
+        idxRows[groups] = rows;
+        idxMin[groups] = min;
+        idxMax[groups] = max;
+        idxOffset[groups] = offset;
+        groups++;
+    }
+
+    // -----------------------------------
+    // Encoding helpers (shared with reader)
+    // -----------------------------------
+    static long zigzag(long v) { return (v << 1) ^ (v >> 63); }
+    static long unzigzag(long v) { return (v >>> 1) ^ -(v & 1); }
+
+    private static void writeInt(OutputStream os, int v) throws IOException {
+        os.write(v >>> 24); os.write(v >>> 16); os.write(v >>> 8); os.write(v);
+    }
+
+    private static void writeLong(OutputStream os, long v) throws IOException {
+        writeInt(os, (int) (v >>> 32));
+        writeInt(os, (int) v);
+    }
+
+    /** Growable byte buffer, reused across groups. */
+    static final class ColumnBuffer {
+        byte[] buf = new byte[4096];
+        int len;
+
+        void clear() { len = 0; }
+
+        void ensure(int cap) {
+            if (cap > buf.length) buf = Arrays.copyOf(buf, Math.max(cap, buf.length * 2));
+        }
+
+        void writeByte(int b) {
+            ensure(len + 1);
+            buf[len++] = (byte) b;
+        }
+
+        void writeVarLong(long v) {
+            ensure(len + 10);
+            while ((v & ~0x7FL) != 0) {
+                buf[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        long count;
+
+        CountingOutputStream(OutputStream out) { this.out = out; }
+
+        @Override public void write(int b) throws IOException { out.write(b); count++; }
+        @Override public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+        @Override public void flush() throws IOException { out.flush(); }
+        @Override public void close() throws IOException { out.close(); }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.study111;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append-only on-device history used by the exporter.
+ *
+ *  events.bin : [long timeMs][byte type][int value]          (13 bytes/row)
+ *  motion.bin : [long timeMs][float x][float y][float z]     (20 bytes/row)
+ *
+ * Fixed-size rows so row counts come straight from file length. Buffered writes don't
+ * end on row boundaries, so a process killed mid-flush can leave a partial last row;
+ * readers ignore it and the next writer truncates it away before appending.
+ * Writers are buffered; call {@link #flush()} before reading. Motion rows arrive in
+ * batches ({@link #appendMotion(long[], float[], int)}) from a background thread.
+ */
+public final class HistoryStore implements Closeable {
+
+    // Session event types
+    public static final byte EVENT_FOCUS_START    = 1;
+    public static final byte EVENT_BREAK_START    = 2;
+    public static final byte EVENT_PAUSE_USER     = 3;
+    public static final byte EVENT_PAUSE_MOVEMENT = 4;
+    public static final byte EVENT_FOCUS_COMPLETE = 5;
+    public static final byte EVENT_BREAK_COMPLETE = 6;
+    public static final byte EVENT_RESET          = 7;
+
+    static final int EVENT_ROW_BYTES  = 8 + 1 + 4;
+    static final int MOTION_ROW_BYTES = 8 + 4 * 3;
+
+    private static final int WRITE_BUFFER = 16 * 1024;
+    private static final int READ_BUFFER  = 64 * 1024;
+
+    private final File eventsFile;
+    private final File motionFile;
+
+    private DataOutputStream eventsOut;
+    private DataOutputStream motionOut;
+
+    public HistoryStore(File dir) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("Cannot create history dir: " + dir);
+        }
+        this.eventsFile = new File(dir, "events.bin");
+        this.motionFile = new File(dir, "motion.bin");
+    }
+
+    // -----------------------------------
+    // Writing
+    // -----------------------------------
+    public synchronized void appendEvent(long timeMs, byte type, int value) throws IOException {
+        if (eventsOut == null) eventsOut = openAppend(eventsFile, EVENT_ROW_BYTES);
+        eventsOut.writeLong(timeMs);
+        eventsOut.writeByte(type);
+        eventsOut.writeInt(value);
+        // Events are rare; flush so they survive process death.
+        eventsOut.flush();
+    }
+
+    /** Append {@code n} rows: {@code timeMs[i]} with {@code xyz[3i..3i+2]}. */
+    public synchronized void appendMotion(long[] timeMs, float[] xyz, int n) throws IOException {
+        if (motionOut == null) motionOut = openAppend(motionFile, MOTION_ROW_BYTES);
+        for (int i = 0, k = 0; i < n; i++, k += 3) {
+            motionOut.writeLong(timeMs[i]);
+            motionOut.writeFloat(xyz[k]);
+            motionOut.writeFloat(xyz[k + 1]);
+            motionOut.writeFloat(xyz[k + 2]);
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        if (eventsOut != null) eventsOut.flush();
+        if (motionOut != null) motionOut.flush();
+    }
+
+    @Override public synchronized void close() throws IOException {
+        try {
+            if (eventsOut != null) eventsOut.close();
+        } finally {
+            eventsOut = null;
+            if (motionOut != null) motionOut.close();
+            motionOut = null;
+        }
+    }
+
+    /** Open for append after cutting off a torn last row, so new rows stay aligned. */
+    private static DataOutputStream openAppend(File f, int rowBytes) throws IOException {
+        FileOutputStream fos = new FileOutputStream(f, true);
+        try {
+            FileChannel ch = fos.getChannel();
+            long size = ch.size();
+            if (size % rowBytes != 0) ch.truncate(size - size % rowBytes);
+        } catch (IOException e) {
+            fos.close();
+            throw e;
+        }
+        return new DataOutputStream(new BufferedOutputStream(fos, WRITE_BUFFER));
+    }
+
+    // -----------------------------------
+    // Reading (streaming)
+    // -----------------------------------
+    public long eventCount()  { return eventsFile.length() / EVENT_ROW_BYTES; }
+    public long motionCount() { return motionFile.length() / MOTION_ROW_BYTES; }
+
+    /** Stream over the first {@code maxRows} events (use eventCount() for a snapshot). */
+    public EventCursor openEvents(long maxRows) throws IOException {
+        return new EventCursor(openRead(eventsFile), maxRows);
+    }
+
+    /** Stream over the first {@code maxRows} motion samples. */
+    public MotionCursor openMotion(long maxRows) throws IOException {
+        return new MotionCursor(openRead(motionFile), maxRows);
+    }
+
+    private static DataInputStream openRead(File f) throws IOException {
+        if (!f.exists()) return null;
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(f), READ_BUFFER));
+    }
+
+    /** Forward-only cursor; fields hold the current row after next() returns true. */
+    public static final class EventCursor implements Closeable {
+        private final DataInputStream in;
+        private long remaining;
+        public long timeMs;
+        public byte type;
+        public int value;
+
+        EventCursor(DataInputStream in, long maxRows) {
+            this.in = in;
+            this.remaining = (in == null) ? 0 : maxRows;
+        }
+
+        public boolean next() throws IOException {
+            if (remaining <= 0) return false;
+            try {
+                timeMs = in.readLong();
+                type = in.readByte();
+                value = in.readInt();
+            } catch (EOFException e) {
+                remaining = 0;
+                return false;
+            }
+            remaining--;
+            return true;
+        }
+
+        @Override public void close() throws IOException { if (in != null) in.close(); }
+    }
+
+    public static final class MotionCursor implements Closeable {
+        private final DataInputStream in;
+        private long remaining;
+        public long timeMs;
+        public float x, y, z;
+
+        MotionCursor(DataInputStream in, long maxRows) {
+            this.in = in;
+            this.remaining = (in == null) ? 0 : maxRows;
+        }
+
+        public boolean next() throws IOException {
+            if (remaining <= 0) return false;
+            try {
+                timeMs = in.readLong();
+                x = in.readFloat();
+                y = in.readFloat();
+                z = in.readFloat();
+            } catch (EOFException e) {
+                remaining = 0;
+                return false;
+            }
+            remaining--;
+            return true;
+        }
+
+        @Override public void close() throws IOException { if (in != null) in.close(); }
+    }
+}
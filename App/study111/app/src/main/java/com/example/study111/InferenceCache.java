@@ -0,0 +1,193 @@
+package com.example.study111;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bounded LRU cache: exact model input bytes -> dequantized output scores.
+ *
+ * Everything lives in primitive arrays sized at construction:
+ *  - open-addressed hash table (linear probing, backward-shift deletion)
+ *    mapping to entry slots
+ *  - entry slots holding key bytes, hash and values
+ *  - doubly linked LRU list threaded through int[] prev/next
+ *
+ * Lookups hash and compare the key straight from the ByteBuffer with absolute
+ * gets, so a hit allocates nothing. Not thread-safe.
+ */
+final class InferenceCache {
+
+    private static final int EMPTY = -1;
+
+    private final int capacity;
+    private final int keyBytes;
+    private final int valueFloats;
+
+    // Hash table: slot -> entry index
+    private final int[] table;
+    private final int mask;
+
+    // Entries
+    private final byte[] keys;
+    private final int[] hashes;
+    private final float[] values;
+    private final int[] tableSlot; // entry -> its table slot
+    private final int[] prev, next;
+    private int head = EMPTY, tail = EMPTY; // head = most recently used
+    private int size = 0;
+
+    private long hits, misses, evictions;
+
+    InferenceCache(int capacity, int keyBytes, int valueFloats) {
+        if (capacity <= 0 || keyBytes <= 0 || valueFloats <= 0) throw new IllegalArgumentException();
+        this.capacity = capacity;
+        this.keyBytes = keyBytes;
+        this.valueFloats = valueFloats;
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1; // pow2 >= 2*capacity
+        this.table = new int[tableSize];
+        this.mask = tableSize - 1;
+        this.keys = new byte[capacity * keyBytes];
+        this.hashes = new int[capacity];
+        this.values = new float[capacity * valueFloats];
+        this.tableSlot = new int[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        Arrays.fill(table, EMPTY);
+    }
+
+    long getHits() { return hits; }
+    long getMisses() { return misses; }
+    long getEvictions() { return evictions; }
+    int size() { return size; }
+    int capacity() { return capacity; }
+
+    /** Approximate heap bytes held by the cache arrays. */
+    long memoryBytes() {
+        return table.length * 4L + keys.length + values.length * 4L + capacity * 16L;
+    }
+
+    /** Drop all entries (e.g. model changed). Counters are kept. */
+    void clear() {
+        Arrays.fill(table, EMPTY);
+        head = tail = EMPTY;
+        size = 0;
+    }
+
+    /**
+     * Look up the first keyBytes bytes of {@code key} (absolute indices, position ignored).
+     *
+     * @return true and fills {@code out} on a hit
+     */
+    boolean get(ByteBuffer key, float[] out) {
+        int h = hash(key);
+        int e = find(key, h);
+        if (e == EMPTY) {
+            misses++;
+            return false;
+        }
+        hits++;
+        System.arraycopy(values, e * valueFloats, out, 0, valueFloats);
+        moveToFront(e);
+        return true;
+    }
+
+    /** Insert or refresh an entry, evicting the least recently used one if full. */
+    void put(ByteBuffer key, float[] value) {
+        int h = hash(key);
+        int e = find(key, h);
+        if (e == EMPTY) {
+            if (size == capacity) {
+                e = tail;
+                unlink(e);
+                removeFromTable(tableSlot[e]);
+                evictions++;
+            } else {
+                e = size++;
+            }
+            int base = e * keyBytes;
+            for (int i = 0; i < keyBytes; i++) keys[base + i] = key.get(i);
+            hashes[e] = h;
+            int slot = h & mask;
+            while (table[slot] != EMPTY) slot = (slot + 1) & mask;
+            table[slot] = e;
+            tableSlot[e] = slot;
+            linkFront(e);
+        } else {
+            moveToFront(e);
+        }
+        System.arraycopy(value, 0, values, e * valueFloats, valueFloats);
+    }
+
+    // -----------------------------------
+    // Helpers
+    // -----------------------------------
+    private int hash(ByteBuffer key) {
+        // FNV-1a over the key bytes, then a murmur finalizer for better low bits
+        int h = 0x811C9DC5;
+        for (int i = 0; i < keyBytes; i++) {
+            h ^= key.get(i);
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private int find(ByteBuffer key, int h) {
+        int slot = h & mask;
+        while (true) {
+            int e = table[slot];
+            if (e == EMPTY) return EMPTY;
+            if (hashes[e] == h && keyEquals(e, key)) return e;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(int e, ByteBuffer key) {
+        int base = e * keyBytes;
+        for (int i = 0; i < keyBytes; i++) {
+            if (keys[base + i] != key.get(i)) return false;
+        }
+        return true;
+    }
+
+    /** Backward-shift deletion keeps probe chains intact without tombstones. */
+    private void removeFromTable(int slot) {
+        int hole = slot;
+        int s = (slot + 1) & mask;
+        while (table[s] != EMPTY) {
+            int e = table[s];
+            int home = hashes[e] & mask;
+            // Move e into the hole if its home is not cyclically within (hole, s]
+            boolean between = (hole <= s) ? (home > hole && home <= s) : (home > hole || home <= s);
+            if (!between) {
+                table[hole] = e;
+                tableSlot[e] = hole;
+                hole = s;
+            }
+            s = (s + 1) & mask;
+        }
+        table[hole] = EMPTY;
+    }
+
+    private void moveToFront(int e) {
+        if (head == e) return;
+        unlink(e);
+        linkFront(e);
+    }
+
+    private void linkFront(int e) {
+        prev[e] = EMPTY;
+        next[e] = head;
+        if (head != EMPTY) prev[head] = e;
+        head = e;
+        if (tail == EMPTY) tail = e;
+    }
+
+    private void unlink(int e) {
+        int p = prev[e], n = next[e];
+        if (p != EMPTY) next[p] = n; else head = n;
+        if (n != EMPTY) prev[n] = p; else tail = p;
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.study111;
 
+import android.app.ActivityManager;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.hardware.Sensor;
@@ -12,21 +14,38 @@ import android.media.MediaPlayer;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.CountDownTimer;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
+import android.util.AtomicFile;
+import android.util.Log;
 import android.widget.Button;
 import android.widget.TextView;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.ChecksSdkIntAtLeast;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.NotificationCompat;
 
 import com.google.android.material.appbar.MaterialToolbar;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.text.BreakIterator;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Pomodoro timer w/ Pause/Resume, motion-pause, and Material top app bar.
@@ -40,6 +59,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     private TextView timerText;
     private TextView messageText;
     private TextView resultText;
+    private ScoreChartView scoreChart;
     private TextView sessionLabel;
     private Button startButton;
     private Button resetButton;
@@ -64,11 +84,60 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     // -----------------------------------
     // Movement detection (Focus only)
     // -----------------------------------
+    private static final String TAG = "MainActivity";
+    private static final String MODEL_ASSET = "tflite_learn_4.tflite";
+
     private SensorManager sensorManager;
     private Sensor accelerometer;
-    private float lastX, lastY, lastZ;
-    private boolean isFirstSensorEvent = true;
     private static final float MOVE_THRESHOLD = 2.0f; // tune
+    // true: a threshold trip pauses only once the model also says pick_up (slower, fewer false pauses)
+    private static final boolean CONFIRM_PAUSE_WITH_MODEL = false;
+    // Once trained on this user's feedback, the corrected model may cancel a threshold pause
+    private static final boolean VETO_PAUSE_WHEN_PERSONALIZED = true;
+    // Read accelerometer reports from shared memory when the sensor supports it
+    private static final boolean USE_DIRECT_CHANNEL = true;
+    private DirectSensorReader directReader;         // null -> listener only
+
+    private static final int INFERENCE_CACHE_SIZE = 64; // memoized model outputs
+    // Integer-only feature extraction (Q9 samples) on low-RAM devices, whose cores are the weakest
+    private static final boolean FIXED_POINT_ON_LOW_RAM = true;
+    // Free the interpreter after this long without Focus detection; rebuilt on the next start
+    private static final long IDLE_RELEASE_MS = 2 * 60_000L;
+    private final Handler idleHandler = new Handler(Looper.getMainLooper());
+
+    private TFLiteClassifier classifier;            // null -> threshold-only detection
+    private final DetectionGovernor governor = new DetectionGovernor();
+    private MotionPipeline motionPipeline;
+
+    // Score history for the live chart (~27 min at 10 Hz, fixed memory)
+    private static final int TIMELINE_CAPACITY = 16384;
+    private static final long CHART_SPAN_MS = 10 * 60_000L; // chart shows the last 10 min
+    private static final int PICK_UP_CLASS = 1;
+    private final ScoreTimeline scoreTimeline = new ScoreTimeline(TIMELINE_CAPACITY, 2);
+
+    // -----------------------------------
+    // History (session events + optional motion traces) and export
+    // -----------------------------------
+    private HistoryStore historyStore;
+    private boolean recordMotion = false;
+    private long motionClockOffsetMs;   // wall clock - elapsedRealtime, for sensor timestamps
+    private static final int MOTION_BATCH = 64; // rows handed to ioExecutor at once (~4 s at 16 Hz)
+    private long[] motionTimes = new long[MOTION_BATCH];  // UI thread; swapped out when full
+    private float[] motionXyz = new float[3 * MOTION_BATCH];
+    private int motionPending = 0;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+
+    // -----------------------------------
+    // Personalization (trained on ioExecutor only)
+    // -----------------------------------
+    private static final String PERSONALIZATION_FILE = "personalization.bin";
+    private static final int TRAIN_MAX_STEPS = 200;
+    private static final long TRAIN_BUDGET_NS = 30_000_000L; // 30 ms per update
+    private final PersonalizationTrainer trainer = new PersonalizationTrainer(
+            TFLiteClassifier.NUM_FEATURES, 2, PersonalizationTrainer.DEFAULT_CAPACITY);
+    private TFLiteClassifier.Result pausedOnResult;    // window ending at the sample that paused (UI thread)
+    private boolean personalized = false;              // a trained correction is installed (UI thread)
+    private boolean trainingPending = false;           // ioExecutor thread only
 
     // -----------------------------------
     // Notifications
@@ -97,6 +166,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         startButton  = findViewById(R.id.startButton);
         resetButton  = findViewById(R.id.resetButton);
         resultText  = findViewById(R.id.resultText);
+        scoreChart  = findViewById(R.id.scoreChart);
 
         // Toolbar setup
         initToolbar();
@@ -104,6 +174,14 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         // Sensor
         sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
         accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        if (USE_DIRECT_CHANNEL && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && DirectSensorReader.isSupported(accelerometer)) {
+            directReader = new DirectSensorReader(sensorManager, accelerometer, this::onAccelerometerSample,
+                    this::onDirectChannelFailed);
+        }
+        initMotionPipeline();
+        historyStore = new HistoryStore(new File(getFilesDir(), "history"));
+        loadPersonalization();
 
         createNotificationChannel();
 
@@ -131,10 +209,141 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
                 openSettings();
                 return true;
             }
+            if (item.getItemId() == R.id.action_export) {
+                exportHistory();
+                return true;
+            }
+            if (item.getItemId() == R.id.action_false_pause) {
+                reportFalsePause();
+                return true;
+            }
+            if (item.getItemId() == R.id.action_confirm_pause) {
+                confirmMovementPause();
+                return true;
+            }
             return false;
         });
     }
 
+    private void initMotionPipeline() {
+        try {
+            classifier = new TFLiteClassifier(getAssets(), MODEL_ASSET);
+            classifier.enableCache(INFERENCE_CACHE_SIZE);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Model unavailable, using threshold-only detection", e);
+            classifier = null;
+        }
+        buildMotionPipeline();
+    }
+
+    private void buildMotionPipeline() {
+        if (classifier != null && useFixedPointFeatures()) {
+            Log.d(TAG, "Using fixed-point feature extraction");
+            motionPipeline = MotionPipeline.fixedPoint(classifier::predictFromFixedWindow, governor,
+                    Debug::threadCpuTimeNanos, motionListener, MOVE_THRESHOLD,
+                    MotionPipeline.DEFAULT_WINDOW_MS, MotionPipeline.DEFAULT_MAX_WINDOW_SAMPLES);
+        } else {
+            MotionPipeline.WindowClassifier wc = (classifier != null) ? classifier::predictFromWindow : null;
+            motionPipeline = new MotionPipeline(wc, governor, Debug::threadCpuTimeNanos, motionListener,
+                    MOVE_THRESHOLD, MotionPipeline.DEFAULT_WINDOW_MS, MotionPipeline.DEFAULT_MAX_WINDOW_SAMPLES);
+        }
+        motionPipeline.setRequireModelConfirmation(CONFIRM_PAUSE_WITH_MODEL);
+        motionPipeline.setVetoTrips(VETO_PAUSE_WHEN_PERSONALIZED && personalized);
+    }
+
+    private boolean useFixedPointFeatures() {
+        if (!FIXED_POINT_ON_LOW_RAM) return false;
+        ActivityManager am = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        return am != null && am.isLowRamDevice();
+    }
+
+    // -----------------------------------
+    // Detection memory: release when idle / trimmed, rebuild before Focus
+    // -----------------------------------
+    private final Runnable idleRelease = () -> releaseDetectionMemory("idle");
+
+    @Override public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        boolean detecting = isTimerRunning && currentSession == SessionType.FOCUS;
+        if (!detecting && level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            releaseDetectionMemory("trim level " + level);
+        }
+    }
+
+    private void releaseDetectionMemory(String reason) {
+        idleHandler.removeCallbacks(idleRelease);
+        if (classifier == null || !classifier.isLoaded()) return;
+        long nativeBefore = Debug.getNativeHeapAllocatedSize();
+        long buffers = classifier.release();
+        motionPipeline.trimMemory();
+        long nativeFreed = nativeBefore - Debug.getNativeHeapAllocatedSize();
+        Log.d(TAG, "Released detection memory (" + reason + "): buffers=" + buffers / 1024
+                + " KiB, native heap=" + nativeFreed / 1024 + " KiB");
+    }
+
+    /** Rebuild the interpreter if it was released; falls back to threshold-only on failure. */
+    private void warmUpDetection() {
+        idleHandler.removeCallbacks(idleRelease);
+        if (classifier == null || classifier.isLoaded()) return;
+        try {
+            long ns = classifier.ensureLoaded();
+            Log.d(TAG, "Rebuilt interpreter in " + (ns / 1_000) / 1000.0 + " ms");
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Rebuilding model failed, using threshold-only detection", e);
+            classifier = null;
+            buildMotionPipeline();
+        }
+    }
+
+    private final MotionPipeline.Listener motionListener = new MotionPipeline.Listener() {
+        @Override public void onMovementDetected() {
+            stopDueToMovement();
+        }
+        @Override public void onResult(TFLiteClassifier.Result result) {
+            updateUi(result);
+        }
+        @Override public void onSamplingPeriodChanged(int periodUs) {
+            Log.d(TAG, "Governor: " + governor.describe());
+            if (classifier != null) {
+                Log.d(TAG, "Inference cache: hits=" + classifier.getCacheHits()
+                        + " misses=" + classifier.getCacheMisses()
+                        + " evictions=" + classifier.getCacheEvictions());
+            }
+            registerAccelerometer();
+        }
+    };
+
+    private void registerAccelerometer() {
+        warmUpDetection();
+        if (hasDirectReader() && directReader.isRunning()) {
+            directReader.setSamplingPeriodUs(governor.getSamplingPeriodUs());
+            return;
+        }
+        sensorManager.unregisterListener(this);
+        if (hasDirectReader() && directReader.start(governor.getSamplingPeriodUs())) return;
+        sensorManager.registerListener(this, accelerometer, governor.getSamplingPeriodUs());
+    }
+
+    /** Only ever set on API 26+; the check lets lint see that too. */
+    @ChecksSdkIntAtLeast(api = Build.VERSION_CODES.O)
+    private boolean hasDirectReader() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && directReader != null;
+    }
+
+    /** The direct channel stopped itself; use the listener for the rest of this activity. */
+    private void onDirectChannelFailed() {
+        directReader = null;
+        sensorManager.registerListener(this, accelerometer, governor.getSamplingPeriodUs());
+    }
+
+    private void unregisterAccelerometer() {
+        if (hasDirectReader()) directReader.stop();
+        sensorManager.unregisterListener(this);
+        flushMotionBatch();
+        idleHandler.removeCallbacks(idleRelease);
+        idleHandler.postDelayed(idleRelease, IDLE_RELEASE_MS);
+    }
+
     private void openSettings() {
         Intent i = new Intent(this, SettingsActivity.class);
         settingsLauncher.launch(i);
@@ -147,6 +356,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         if (isTimerRunning) {
             // Running -> Pause
             pauseTimer(false);
+            logEvent(HistoryStore.EVENT_PAUSE_USER);
             messageText.setText("Paused.");
             return;
         }
@@ -154,9 +364,12 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         // Not running -> either Resume or brand-new Start
         if (!hasStartedSession) {
             // Fresh start: reload prefs & use full duration
+            pausedOnResult = null;
             loadDurationsFromPrefs();
             timeLeftMs = (currentSession == SessionType.FOCUS) ? focusDurationMs : breakDurationMs;
             hasStartedSession = true;
+            scoreTimeline.clear();
+            scoreChart.clear();
         }
 
         // Resume (or start new) using whatever timeLeftMs currently is
@@ -171,6 +384,10 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         cancelTimer();
         currentSession = SessionType.FOCUS;
         hasStartedSession = false;
+        scoreTimeline.clear();
+        scoreChart.clear();
+        pausedOnResult = null;
+        logEvent(HistoryStore.EVENT_RESET);
         loadDurationsFromPrefs();
         timeLeftMs = focusDurationMs;
         updateTimerText();
@@ -186,6 +403,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         currentSession = SessionType.FOCUS;
         updateSessionLabel();
         messageText.setText("");
+        logEvent(HistoryStore.EVENT_FOCUS_START);
         startTimer(timeLeftMs, true /*detectMovement*/);
     }
 
@@ -193,6 +411,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         currentSession = SessionType.BREAK;
         updateSessionLabel();
         messageText.setText("Break started.");
+        logEvent(HistoryStore.EVENT_BREAK_START);
         startTimer(timeLeftMs, false /*no movement detection during break*/);
     }
 
@@ -202,12 +421,14 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     private void startTimer(long durationMs, boolean detectMovement) {
         cancelTimer(); // ensure no stale timer
         isTimerRunning = true;
-        isFirstSensorEvent = true;
+        motionPipeline.reset();
+        recordMotion = detectMovement && Prefs.isRecordMotion(this);
+        motionClockOffsetMs = System.currentTimeMillis() - SystemClock.elapsedRealtime();
 
         if (detectMovement && accelerometer != null) {
-            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_NORMAL);
+            registerAccelerometer();
         } else {
-            sensorManager.unregisterListener(this);
+            unregisterAccelerometer();
         }
 
         countDownTimer = new CountDownTimer(durationMs, 1000) {
@@ -217,10 +438,11 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             }
             @Override public void onFinish() {
                 isTimerRunning = false;
-                sensorManager.unregisterListener(MainActivity.this);
+                unregisterAccelerometer();
                 timeLeftMs = 0;
                 updateTimerText();
                 if (currentSession == SessionType.FOCUS) {
+                    logEvent(HistoryStore.EVENT_FOCUS_COMPLETE);
                     notifyUser("Focus complete!");
                     messageText.setText("Focus complete! Break starting…");
                     // Auto-start break
@@ -228,6 +450,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
                     hasStartedSession = true; // new session (break)
                     startBreak();
                 } else {
+                    logEvent(HistoryStore.EVENT_BREAK_COMPLETE);
                     notifyUser("Break complete!");
                     messageText.setText("Break complete!");
                     if (AUTO_LOOP) {
@@ -256,7 +479,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             countDownTimer = null;
         }
         isTimerRunning = false;
-        sensorManager.unregisterListener(this);
+        unregisterAccelerometer();
     }
 
     /** Pause helper used by user action or movement detection. */
@@ -267,12 +490,15 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         if (dueToMovement) {
             notifyUser("Timer paused: phone was moved!");
         }
+        schedulePersonalization(); // detection is idle now
         updateStartButton();
     }
 
     // Called when phone moved during Focus
     private void stopDueToMovement() {
+        pausedOnResult = motionPipeline.getTripResult();
         pauseTimer(true);
+        logEvent(HistoryStore.EVENT_PAUSE_MOVEMENT);
         messageText.setText("Paused due to movement.");
     }
 
@@ -280,26 +506,17 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     // Sensor callbacks
     // -----------------------------------
     @Override public void onSensorChanged(SensorEvent event) {
-        if (!isTimerRunning) return;
-        if (currentSession != SessionType.FOCUS) return; // ignore in break
         if (event.sensor.getType() != Sensor.TYPE_ACCELEROMETER) return;
+        onAccelerometerSample(event.values[0], event.values[1], event.values[2], event.timestamp);
+    }
 
-        float x = event.values[0];
-        float y = event.values[1];
-        float z = event.values[2];
-
-        if (isFirstSensorEvent) {
-            lastX=x; lastY=y; lastZ=z;
-            isFirstSensorEvent=false;
-            return;
-        }
-
-        float delta = Math.abs(x-lastX) + Math.abs(y-lastY) + Math.abs(z-lastZ);
-        if (delta > MOVE_THRESHOLD) {
-            stopDueToMovement();
-        }
+    /** Shared by the listener and the direct channel poller (both on the main thread). */
+    private void onAccelerometerSample(float x, float y, float z, long timestampNs) {
+        if (!isTimerRunning) return;
+        if (currentSession != SessionType.FOCUS) return; // ignore in break
 
-        lastX=x; lastY=y; lastZ=z;
+        if (recordMotion) recordMotionSample(x, y, z, timestampNs);
+        motionPipeline.onSample(x, y, z, timestampNs);
     }
 
     @Override public void onAccuracyChanged(Sensor sensor, int accuracy) {}
@@ -308,19 +525,193 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         super.onPause();
         // If timer running and in Focus we should unregister to save power.
         // We'll re-register onResume.
-        sensorManager.unregisterListener(this);
+        unregisterAccelerometer();
+    }
+
+    @Override protected void onDestroy() {
+        super.onDestroy();
+        idleHandler.removeCallbacks(idleRelease);
+        if (classifier != null) classifier.close();
+        final HistoryStore store = historyStore;
+        ioExecutor.execute(() -> {
+            try {
+                store.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Closing history failed", e);
+            }
+        });
+        ioExecutor.shutdown();
     }
 
     @Override protected void onResume() {
         super.onResume();
         if (isTimerRunning && currentSession == SessionType.FOCUS && accelerometer != null) {
-            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_NORMAL);
+            motionPipeline.reset();
+            registerAccelerometer();
         } else {
             // If returning to app (e.g., after settings), try to re-read prefs if idle
             applyDurationsFromPrefsIfIdle();
         }
     }
 
+    // -----------------------------------
+    // History / export
+    // -----------------------------------
+    private void logEvent(byte type) {
+        if (ioExecutor.isShutdown()) return; // timer can outlive onDestroy
+        final long now = System.currentTimeMillis();
+        final int secondsLeft = (int) (timeLeftMs / 1000);
+        final HistoryStore store = historyStore;
+        ioExecutor.execute(() -> {
+            try {
+                store.appendEvent(now, type, secondsLeft);
+            } catch (IOException e) {
+                Log.w(TAG, "Logging session event failed", e);
+            }
+        });
+    }
+
+    /** Buffer on the sensor thread; disk writes happen in batches on ioExecutor. */
+    private void recordMotionSample(float x, float y, float z, long timestampNs) {
+        int k = motionPending;
+        motionTimes[k] = motionClockOffsetMs + timestampNs / 1_000_000L;
+        motionXyz[3 * k] = x;
+        motionXyz[3 * k + 1] = y;
+        motionXyz[3 * k + 2] = z;
+        if (++motionPending == MOTION_BATCH) flushMotionBatch();
+    }
+
+    private void flushMotionBatch() {
+        final int n = motionPending;
+        if (n == 0 || ioExecutor.isShutdown()) return;
+        final long[] times = motionTimes;
+        final float[] xyz = motionXyz;
+        motionTimes = new long[MOTION_BATCH];
+        motionXyz = new float[3 * MOTION_BATCH];
+        motionPending = 0;
+        final HistoryStore store = historyStore;
+        ioExecutor.execute(() -> {
+            try {
+                store.appendMotion(times, xyz, n);
+            } catch (IOException e) {
+                Log.w(TAG, "Recording motion failed; stopping recording", e);
+                runOnUiThread(() -> recordMotion = false);
+            }
+        });
+    }
+
+    /** Stream history to app-specific external storage on a background thread. */
+    private void exportHistory() {
+        File dir = getExternalFilesDir(null);
+        if (dir == null) dir = getFilesDir();
+        final File out = new File(dir, "focus_history_" + System.currentTimeMillis() + ".sfch");
+        final HistoryStore store = historyStore;
+        flushMotionBatch(); // queued ahead of the export on the same executor
+        messageText.setText("Exporting history…");
+        ioExecutor.execute(() -> {
+            try {
+                long rows = new HistoryExporter(store).export(out, (done, total) -> {
+                    long pct = (total > 0) ? done * 100 / total : 100;
+                    runOnUiThread(() -> messageText.setText("Exporting history… " + pct + "%"));
+                });
+                runOnUiThread(() -> messageText.setText("Exported " + rows + " rows to " + out.getName()));
+            } catch (IOException e) {
+                Log.w(TAG, "History export failed", e);
+                runOnUiThread(() -> messageText.setText("Export failed."));
+            }
+        });
+    }
+
+    // -----------------------------------
+    // Personalization feedback
+    // -----------------------------------
+
+    /** User says the last movement pause was wrong -> label that window stationary. */
+    private void reportFalsePause() {
+        if (pausedOnResult == null || pausedOnResult.features == null) {
+            messageText.setText("No movement pause to report.");
+            return;
+        }
+        addFeedback(pausedOnResult, 0);
+        pausedOnResult = null;
+        schedulePersonalization();
+        messageText.setText("Thanks, detection will adapt.");
+    }
+
+    /** User says they did pick the phone up -> label that window pick_up. */
+    private void confirmMovementPause() {
+        if (pausedOnResult == null || pausedOnResult.features == null) {
+            messageText.setText("No movement pause to confirm.");
+            return;
+        }
+        addFeedback(pausedOnResult, 1);
+        pausedOnResult = null;
+        schedulePersonalization();
+        messageText.setText("Thanks, detection will adapt.");
+    }
+
+    /** A trained correction is installed: let it cancel threshold pauses from now on. */
+    private void onPersonalized() {
+        personalized = true;
+        if (motionPipeline != null) motionPipeline.setVetoTrips(VETO_PAUSE_WHEN_PERSONALIZED);
+    }
+
+    private void addFeedback(TFLiteClassifier.Result r, int label) {
+        if (classifier == null || r.modelScores == null) return;
+        final float[] features = r.features;
+        final float[] modelScores = r.modelScores;
+        ioExecutor.execute(() -> {
+            trainer.addExample(features, modelScores, label);
+            trainingPending = true;
+        });
+    }
+
+    /** Train on the background thread; only called while detection is idle. */
+    private void schedulePersonalization() {
+        if (classifier == null || ioExecutor.isShutdown()) return;
+        final TFLiteClassifier target = classifier;
+        final AtomicFile file = new AtomicFile(new File(getFilesDir(), PERSONALIZATION_FILE));
+        ioExecutor.execute(() -> {
+            if (!trainingPending) return;
+            trainingPending = false;
+            int steps = trainer.train(TRAIN_MAX_STEPS, TRAIN_BUDGET_NS);
+            if (steps == 0) return;
+            target.setScoreCorrection(trainer.getCorrection());
+            runOnUiThread(this::onPersonalized);
+            // Replaced whole on success, so a crash mid-write keeps the previous state
+            FileOutputStream fos = null;
+            try {
+                fos = file.startWrite();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+                trainer.save(out);
+                out.flush();
+                file.finishWrite(fos);
+            } catch (IOException e) {
+                if (fos != null) file.failWrite(fos);
+                Log.w(TAG, "Saving personalization failed", e);
+            }
+            Log.d(TAG, "Personalization updated: " + steps + " steps, "
+                    + trainer.getExampleCount() + " examples");
+        });
+    }
+
+    private void loadPersonalization() {
+        if (classifier == null) return;
+        final TFLiteClassifier target = classifier;
+        final AtomicFile file = new AtomicFile(new File(getFilesDir(), PERSONALIZATION_FILE));
+        ioExecutor.execute(() -> {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.openRead()))) {
+                trainer.load(in);
+                target.setScoreCorrection(trainer.getCorrection());
+                if (trainer.getCorrection() != null) runOnUiThread(this::onPersonalized);
+            } catch (FileNotFoundException e) {
+                // Nothing saved yet
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Discarding personalization state", e);
+            }
+        });
+    }
+
     // -----------------------------------
     // Duration helpers (Prefs)
     // -----------------------------------
@@ -433,6 +824,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     }
     private void updateUi(TFLiteClassifier.Result r) {
         if (r == null) return;
+        recordScores(r);
         String msg;
         if (r.scores != null && r.scores.length == 2) {
             msg = String.format(Locale.US,
@@ -443,4 +835,18 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         }
         resultText.setText(msg);
     }
+
+    /** Append result to the chart timeline (label stored as top-class index). */
+    private void recordScores(TFLiteClassifier.Result r) {
+        if (r.scores == null || r.scores.length == 0) return;
+        int top = 0;
+        for (int i = 1; i < r.scores.length; i++) {
+            if (r.scores[i] > r.scores[top]) top = i;
+        }
+        long now = SystemClock.elapsedRealtime();
+        scoreTimeline.append(now, top, r.scores);
+        if (r.scores.length > PICK_UP_CLASS) {
+            scoreChart.update(scoreTimeline, PICK_UP_CLASS, now, CHART_SPAN_MS);
+        }
+    }
 }
@@ -0,0 +1,178 @@
+package com.example.study111;
+
+/**
+ * Feature extraction for the motion model: raw accelerometer window [N][3]
+ * -> 39 statistical features (see {@link #compute} for the index order).
+ *
+ * Kept free of Android/TFLite types so it can run in JVM tests and tools.
+ */
+public final class MotionFeatures {
+
+    public static final int NUM_FEATURES = 39;
+
+    private MotionFeatures() {}
+
+    /* ------------------------------------------------------------------
+     * Placeholder feature extraction (TEMP) — 39 features.
+     * Replace with exact Edge Impulse DSP once you give config.
+     *
+     * Features used here (index order shown):
+     *  0-2 mean(X,Y,Z)
+     *  3-5 std(X,Y,Z)
+     *  6-8 min(X,Y,Z)
+     *  9-11 max(X,Y,Z)
+     *  12-14 rms(X,Y,Z)
+     *  15-17 skew(X,Y,Z)
+     *  18-20 kurt(X,Y,Z)
+     *  21 mean(|g| magnitude)
+     *  22 std(|g|)
+     *  23 min(|g|)
+     *  24 max(|g|)
+     *  25 rms(|g|)
+     *  26 skew(|g|)
+     *  27 kurt(|g|)
+     *  28 corr(X,Y)
+     *  29 corr(Y,Z)
+     *  30 corr(X,Z)
+     *  31 energy(X)
+     *  32 energy(Y)
+     *  33 energy(Z)
+     *  34 energy(|g|)
+     *  35 rangeX = max-min
+     *  36 rangeY
+     *  37 rangeZ
+     *  38 rangeMag
+     * ------------------------------------------------------------------ */
+    public static float[] compute(float[][] w) {
+        return compute(w, FeaturePlan.ALL);
+    }
+
+    /**
+     * Same as {@link #compute(float[][])} but only for the features in {@code plan};
+     * the rest are left at 0. Needed features are bit-identical to the full computation
+     * (same accumulators, same order), only whole loops that feed skipped ones are dropped.
+     */
+    public static float[] compute(float[][] w, FeaturePlan plan) {
+        if (w == null || w.length == 0) return new float[NUM_FEATURES];
+        final int n = w.length;
+        final boolean mag = plan.magnitude;
+
+        // accumulate
+        double sumX=0,sumY=0,sumZ=0;
+        double minX=Double.MAX_VALUE,minY=Double.MAX_VALUE,minZ=Double.MAX_VALUE;
+        double maxX=-Double.MAX_VALUE,maxY=-Double.MAX_VALUE,maxZ=-Double.MAX_VALUE;
+
+        double sumMag=0;
+        double minMag=Double.MAX_VALUE,maxMag=-Double.MAX_VALUE;
+
+        for (float[] s : w) {
+            float x=s[0], y=s[1], z=s[2];
+            sumX+=x; sumY+=y; sumZ+=z;
+            if (x<minX)minX=x; if (y<minY)minY=y; if (z<minZ)minZ=z;
+            if (x>maxX)maxX=x; if (y>maxY)maxY=y; if (z>maxZ)maxZ=z;
+            if (mag) {
+                double m=Math.sqrt(x*x+y*y+z*z);
+                sumMag+=m;
+                if (m<minMag)minMag=m;
+                if (m>maxMag)maxMag=m;
+            }
+        }
+        double meanX=sumX/n, meanY=sumY/n, meanZ=sumZ/n;
+        double meanMag=sumMag/n;
+
+        // var, skew, kurt, energy
+        double varX=0,varY=0,varZ=0,varMag=0;
+        double skewX=0,skewY=0,skewZ=0,skewMag=0;
+        double kurtX=0,kurtY=0,kurtZ=0,kurtMag=0;
+        double energyX=0,energyY=0,energyZ=0,energyMag=0;
+        double sumXY=0,sumYZ=0,sumXZ=0; // for correlation
+
+        final boolean spread = plan.axisSpread, moments = plan.axisMoments, corr = plan.correlation;
+        final boolean energy = plan.axisEnergy, magSecond = plan.magSecond, magMoments = plan.magMoments;
+        if (spread || energy || magSecond) {
+            for (float[] s : w) {
+                float x=s[0], y=s[1], z=s[2];
+                if (spread) {
+                    double dx=x-meanX, dy=y-meanY, dz=z-meanZ;
+                    varX+=dx*dx; varY+=dy*dy; varZ+=dz*dz;
+                    if (moments) {
+                        skewX+=dx*dx*dx; skewY+=dy*dy*dy; skewZ+=dz*dz*dz;
+                        kurtX+=dx*dx*dx*dx; kurtY+=dy*dy*dy*dy; kurtZ+=dz*dz*dz*dz;
+                    }
+                    if (corr) {
+                        sumXY+=dx*dy;
+                        sumYZ+=dy*dz;
+                        sumXZ+=dx*dz;
+                    }
+                }
+                if (energy) {
+                    energyX+=x*x; energyY+=y*y; energyZ+=z*z;
+                }
+                if (magSecond) {
+                    double m=Math.sqrt(x*x+y*y+z*z);
+                    double dm=m-meanMag;
+                    varMag+=dm*dm;
+                    if (magMoments) {
+                        skewMag+=dm*dm*dm;
+                        kurtMag+=dm*dm*dm*dm;
+                    }
+                    energyMag+=m*m;
+                }
+            }
+        }
+        varX/=n; varY/=n; varZ/=n; varMag/=n;
+        double stdX=Math.sqrt(varX), stdY=Math.sqrt(varY), stdZ=Math.sqrt(varZ), stdMag=Math.sqrt(varMag);
+
+        // Normalize skew/kurt
+        if (stdX>0) { skewX/= (n*stdX*stdX*stdX); kurtX/= (n*varX*varX); }
+        if (stdY>0) { skewY/= (n*stdY*stdY*stdY); kurtY/= (n*varY*varY); }
+        if (stdZ>0) { skewZ/= (n*stdZ*stdZ*stdZ); kurtZ/= (n*varZ*varZ); }
+        if (stdMag>0){ skewMag/=(n*stdMag*stdMag*stdMag); kurtMag/=(n*varMag*varMag); }
+
+        // Correlations
+        double corrXY = (stdX>0 && stdY>0) ? (sumXY/n)/(stdX*stdY) : 0;
+        double corrYZ = (stdY>0 && stdZ>0) ? (sumYZ/n)/(stdY*stdZ) : 0;
+        double corrXZ = (stdX>0 && stdZ>0) ? (sumXZ/n)/(stdX*stdZ) : 0;
+
+        // RMS
+        double rmsX=Math.sqrt(energyX/n);
+        double rmsY=Math.sqrt(energyY/n);
+        double rmsZ=Math.sqrt(energyZ/n);
+        double rmsMag=Math.sqrt(energyMag/n);
+
+        float[] f = new float[NUM_FEATURES];
+        int i=0;
+        f[i++]=(float)meanX; f[i++]=(float)meanY; f[i++]=(float)meanZ;
+        f[i++]=(float)stdX;  f[i++]=(float)stdY;  f[i++]=(float)stdZ;
+        f[i++]=(float)minX;  f[i++]=(float)minY;  f[i++]=(float)minZ;
+        f[i++]=(float)maxX;  f[i++]=(float)maxY;  f[i++]=(float)maxZ;
+        f[i++]=(float)rmsX;  f[i++]=(float)rmsY;  f[i++]=(float)rmsZ;
+        f[i++]=(float)skewX; f[i++]=(float)skewY; f[i++]=(float)skewZ;
+        f[i++]=(float)kurtX; f[i++]=(float)kurtY; f[i++]=(float)kurtZ;
+        f[i++]=(float)meanMag;
+        f[i++]=(float)stdMag;
+        f[i++]=(float)minMag;
+        f[i++]=(float)maxMag;
+        f[i++]=(float)rmsMag;
+        f[i++]=(float)skewMag;
+        f[i++]=(float)kurtMag;
+        f[i++]=(float)corrXY;
+        f[i++]=(float)corrYZ;
+        f[i++]=(float)corrXZ;
+        f[i++]=(float)energyX;
+        f[i++]=(float)energyY;
+        f[i++]=(float)energyZ;
+        f[i++]=(float)energyMag;
+        f[i++]=(float)(maxX-minX);
+        f[i++]=(float)(maxY-minY);
+        f[i++]=(float)(maxZ-minZ);
+        f[i++]=(float)(maxMag-minMag);
+        // 39 filled.
+
+        // Skipped inputs stay at 0 (quantizes to the input zero point)
+        for (int j = 0; j < NUM_FEATURES; j++) {
+            if (!plan.isNeeded(j)) f[j] = 0f;
+        }
+        return f;
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.study111;
+
+/**
+ * Accelerometer ingestion -> window -> classifier path used during Focus.
+ *
+ *  - Every sample: cheap delta check against the previous sample (MOVE_THRESHOLD).
+ *  - Samples go into a primitive ring buffer; every hop (and every Nth hop per the
+ *    governor's inference stride) the last window is classified.
+ *  - The threshold alone reports movement, as before. With
+ *    {@link #setRequireModelConfirmation} on (and a classifier), movement is reported only
+ *    when the threshold tripped since the last inference AND the model says pick_up.
+ *  - On a trip the window ending at the tripping sample is classified
+ *    ({@link #getTripResult}), so feedback on a pause labels what actually caused it.
+ *    With {@link #setVetoTrips} that window can also cancel the pause.
+ *  - Window and hop lengths are converted to samples with the measured inter-event
+ *    interval: Android often delivers at a different rate than requested.
+ *
+ * In fixed-point mode ({@link #fixedPoint}) samples are stored as Q9 int16 plus an 8-bit
+ * residual on arrival and windows go to a {@link FixedPointWindowClassifier} without any
+ * float conversion.
+ *
+ * CPU time per window is measured with the supplied thread CPU clock and fed to the
+ * {@link DetectionGovernor}, which may change sampling period / hop / stride.
+ *
+ * Not thread-safe; call from the sensor callback thread.
+ */
+public final class MotionPipeline {
+
+    /** Classifies one window of raw [N][3] samples. */
+    public interface WindowClassifier {
+        TFLiteClassifier.Result classify(float[][] windowXYZ);
+    }
+
+    /**
+     * Classifies one window of Q9 int16 samples and their residuals
+     * ({@link FixedPointFeatures#residual}), oldest first.
+     */
+    public interface FixedPointWindowClassifier {
+        TFLiteClassifier.Result classify(short[] x, short[] y, short[] z,
+                                         byte[] rx, byte[] ry, byte[] rz, int n);
+    }
+
+    /** Thread CPU clock in ns (Debug.threadCpuTimeNanos() on device). */
+    public interface CpuClock {
+        long threadCpuNanos();
+    }
+
+    public interface Listener {
+        void onMovementDetected();
+        void onResult(TFLiteClassifier.Result result);
+        /** Governor changed the sampling period; re-register the sensor listener. */
+        void onSamplingPeriodChanged(int periodUs);
+    }
+
+    public static final String PICK_UP_LABEL = "pick_up";
+
+    public static final float DEFAULT_MOVE_THRESHOLD = 2.0f;
+    public static final int DEFAULT_WINDOW_MS = 2_000;
+    /** DEFAULT_WINDOW_MS down to ~16 ms delivery (listeners may deliver faster than asked). */
+    public static final int DEFAULT_MAX_WINDOW_SAMPLES = 128;
+    private static final int MIN_WINDOW_SAMPLES = 4;
+
+    private final WindowClassifier classifier; // may be null -> threshold only
+    private final FixedPointWindowClassifier fixedClassifier; // set instead of classifier in fixed-point mode
+    private final boolean hasClassifier;
+    private final DetectionGovernor governor;
+    private final CpuClock cpuClock;
+    private final Listener listener;
+    private final float moveThreshold;
+    private final int windowMs;
+
+    // Ring buffer of the most recent samples (float, or Q9 in fixed-point mode)
+    private final int capacity;
+    private final float[] bufX, bufY, bufZ;
+    private final short[] qX, qY, qZ;
+    private final byte[] rX, rY, rZ;   // sub-Q9 residuals, same slots as qX..qZ
+    private int writePos = 0;
+    private int count = 0;
+
+    // Reused [N][3] view handed to the classifier; reallocated only when N changes.
+    // N follows the measured rate with a deadband so delivery jitter doesn't churn it.
+    private float[][] window = new float[0][];
+    private int windowN = 0; // 0: not chosen yet
+    private short[] winX, winY, winZ; // fixed-point mode; allocated on the first window
+    private byte[] winRX, winRY, winRZ;
+
+    private boolean requireModelConfirmation = false;
+    private boolean vetoTrips = false;
+    private TFLiteClassifier.Result tripResult; // window ending at the sample behind the last pause
+
+    // Measured inter-event interval (EWMA of sensor timestamp deltas); 0 until known
+    private static final long MAX_INTERVAL_NS = 1_000_000_000L; // longer gaps are delivery stalls
+    private long lastTimestampNs;
+    private float intervalNs = 0f;
+
+    private float lastX, lastY, lastZ;
+    private boolean first = true;
+    private boolean movedSinceInference = false;
+    private int samplesSinceHop = 0;
+    private int hopIndex = 0;
+    private long windowsProcessed = 0;
+
+    public MotionPipeline(WindowClassifier classifier, DetectionGovernor governor,
+                          CpuClock cpuClock, Listener listener) {
+        this(classifier, governor, cpuClock, listener, DEFAULT_MOVE_THRESHOLD, DEFAULT_WINDOW_MS,
+                DEFAULT_MAX_WINDOW_SAMPLES);
+    }
+
+    public MotionPipeline(WindowClassifier classifier, DetectionGovernor governor,
+                          CpuClock cpuClock, Listener listener,
+                          float moveThreshold, int windowMs, int maxWindowSamples) {
+        this(classifier, null, governor, cpuClock, listener, moveThreshold, windowMs, maxWindowSamples);
+    }
+
+    /** Pipeline that keeps samples in Q9 int16 and classifies with the integer-only extractor. */
+    public static MotionPipeline fixedPoint(FixedPointWindowClassifier classifier, DetectionGovernor governor,
+                                            CpuClock cpuClock, Listener listener,
+                                            float moveThreshold, int windowMs, int maxWindowSamples) {
+        if (maxWindowSamples > FixedPointFeatures.MAX_WINDOW) throw new IllegalArgumentException("window too large");
+        return new MotionPipeline(null, classifier, governor, cpuClock, listener,
+                moveThreshold, windowMs, maxWindowSamples);
+    }
+
+    private MotionPipeline(WindowClassifier classifier, FixedPointWindowClassifier fixedClassifier,
+                           DetectionGovernor governor, CpuClock cpuClock, Listener listener,
+                           float moveThreshold, int windowMs, int maxWindowSamples) {
+        if (maxWindowSamples < MIN_WINDOW_SAMPLES) throw new IllegalArgumentException("window too small");
+        this.classifier = classifier;
+        this.fixedClassifier = fixedClassifier;
+        this.hasClassifier = classifier != null || fixedClassifier != null;
+        this.governor = governor;
+        this.cpuClock = cpuClock;
+        this.listener = listener;
+        this.moveThreshold = moveThreshold;
+        this.windowMs = windowMs;
+        this.capacity = maxWindowSamples;
+        boolean fixed = fixedClassifier != null;
+        this.bufX = fixed ? null : new float[capacity];
+        this.bufY = fixed ? null : new float[capacity];
+        this.bufZ = fixed ? null : new float[capacity];
+        this.qX = fixed ? new short[capacity] : null;
+        this.qY = fixed ? new short[capacity] : null;
+        this.qZ = fixed ? new short[capacity] : null;
+        this.rX = fixed ? new byte[capacity] : null;
+        this.rY = fixed ? new byte[capacity] : null;
+        this.rZ = fixed ? new byte[capacity] : null;
+    }
+
+    /** Forget buffered samples (call when a Focus run starts or resumes). */
+    public void reset() {
+        first = true;
+        movedSinceInference = false;
+        writePos = 0;
+        count = 0;
+        samplesSinceHop = 0;
+        hopIndex = 0;
+        intervalNs = 0f;
+        windowN = 0;
+        tripResult = null;
+        governor.resetMeasurement();
+    }
+
+    /**
+     * Pause only when the threshold tripped AND the next window is classified pick_up.
+     * Fewer false pauses, but up to a hop (times stride) of extra latency and no pause at
+     * all when the model misses. Off by default; ignored without a classifier.
+     */
+    public void setRequireModelConfirmation(boolean require) {
+        requireModelConfirmation = require;
+        if (!require && !vetoTrips) movedSinceInference = false;
+    }
+
+    /**
+     * Let the window ending at a tripping sample cancel the pause unless it is classified
+     * pick_up; a cancelled trip still pauses if a following window says pick_up (as with
+     * {@link #setRequireModelConfirmation}). Trips before the first full window always
+     * pause. Meant for a per-user corrected model; ignored without a classifier.
+     */
+    public void setVetoTrips(boolean veto) {
+        vetoTrips = veto;
+        if (!veto && !requireModelConfirmation) movedSinceInference = false;
+    }
+
+    /** Classification of the window that ended at the last pause's sample; null if none was full. */
+    public TFLiteClassifier.Result getTripResult() { return tripResult; }
+
+    /** Measured sampling period, or the governor's requested one until samples arrive. */
+    public int getEffectiveSamplingPeriodUs() {
+        if (intervalNs > 0f) return Math.max(1, Math.round(intervalNs / 1000f));
+        return governor.getSamplingPeriodUs();
+    }
+
+    /** Drop the classifier window view; it is reallocated on the next window. */
+    public void trimMemory() {
+        window = new float[0][];
+        winX = winY = winZ = null;
+        winRX = winRY = winRZ = null;
+    }
+
+    public DetectionGovernor getGovernor() { return governor; }
+    public long getWindowsProcessed() { return windowsProcessed; }
+
+    /** Feed one accelerometer sample (m/s^2, sensor timestamp in ns). */
+    public void onSample(float x, float y, float z, long timestampNs) {
+        governor.onSensorEvent(timestampNs);
+
+        if (first) {
+            lastX = x; lastY = y; lastZ = z;
+            lastTimestampNs = timestampNs;
+            first = false;
+            push(x, y, z);
+            return;
+        }
+
+        long dt = timestampNs - lastTimestampNs;
+        lastTimestampNs = timestampNs;
+        if (dt > 0 && dt <= MAX_INTERVAL_NS) {
+            intervalNs = (intervalNs == 0f) ? dt : intervalNs + (dt - intervalNs) / 8f;
+        }
+
+        float delta = Math.abs(x - lastX) + Math.abs(y - lastY) + Math.abs(z - lastZ);
+        lastX = x; lastY = y; lastZ = z;
+        push(x, y, z);
+
+        int periodUs = getEffectiveSamplingPeriodUs();
+        int windowSamples = 0;
+        if (hasClassifier) {
+            int n = windowSamples(periodUs);
+            if (Math.abs(n - windowN) > Math.max(1, windowN / 8)) windowN = n;
+            windowSamples = windowN;
+        }
+
+        boolean classified = false;
+        if (delta > moveThreshold) {
+            if (!hasClassifier) {
+                listener.onMovementDetected();
+                return;
+            }
+            if (requireModelConfirmation) {
+                movedSinceInference = true;
+            } else if (!movedSinceInference) {
+                TFLiteClassifier.Result r = (count >= windowSamples) ? classifyLatest(windowSamples) : null;
+                if (r != null) listener.onResult(r);
+                if (!vetoTrips || r == null || PICK_UP_LABEL.equals(r.label)) {
+                    tripResult = r;
+                    listener.onMovementDetected();
+                    return;
+                }
+                movedSinceInference = true; // vetoed; the following windows may still confirm it
+                classified = r != null;
+            }
+        }
+
+        if (hasClassifier) {
+            samplesSinceHop++;
+            int hopSamples = Math.max(1, (int) (governor.getHopMs() * 1000L / periodUs));
+            if (classified) {
+                samplesSinceHop = 0; // the trip window stands in for this hop
+            } else if (count >= windowSamples && samplesSinceHop >= hopSamples) {
+                samplesSinceHop = 0;
+                hopIndex++;
+                if (hopIndex % governor.getInferenceStride() == 0) {
+                    if (runWindow(windowSamples)) return;
+                }
+            }
+        }
+
+        if (governor.maybeAdjust(timestampNs)) {
+            intervalNs = 0f; // learn the rate the re-registered sensor actually delivers
+            windowN = 0;
+            listener.onSamplingPeriodChanged(governor.getSamplingPeriodUs());
+        }
+    }
+
+    /** @return true if movement was reported */
+    private boolean runWindow(int n) {
+        TFLiteClassifier.Result r = classifyLatest(n);
+        listener.onResult(r);
+        boolean moved = movedSinceInference;
+        movedSinceInference = false;
+        if (moved && r != null && PICK_UP_LABEL.equals(r.label)) {
+            tripResult = r;
+            listener.onMovementDetected();
+            return true;
+        }
+        return false;
+    }
+
+    /** Classify the newest {@code n} samples and charge the CPU time to the governor. */
+    private TFLiteClassifier.Result classifyLatest(int n) {
+        int start = writePos - n;
+        if (start < 0) start += capacity;
+        TFLiteClassifier.Result r;
+        long t0;
+        if (fixedClassifier != null) {
+            if (winX == null) {
+                winX = new short[capacity];
+                winY = new short[capacity];
+                winZ = new short[capacity];
+                winRX = new byte[capacity];
+                winRY = new byte[capacity];
+                winRZ = new byte[capacity];
+            }
+            unwrap(qX, winX, start, n);
+            unwrap(qY, winY, start, n);
+            unwrap(qZ, winZ, start, n);
+            unwrap(rX, winRX, start, n);
+            unwrap(rY, winRY, start, n);
+            unwrap(rZ, winRZ, start, n);
+            t0 = cpuClock.threadCpuNanos();
+            r = fixedClassifier.classify(winX, winY, winZ, winRX, winRY, winRZ, n);
+        } else {
+            if (window.length != n) {
+                window = new float[n][3];
+            }
+            for (int i = 0; i < n; i++) {
+                int p = start + i;
+                if (p >= capacity) p -= capacity;
+                float[] s = window[i];
+                s[0] = bufX[p]; s[1] = bufY[p]; s[2] = bufZ[p];
+            }
+            t0 = cpuClock.threadCpuNanos();
+            r = classifier.classify(window);
+        }
+        governor.onWindowProcessed(cpuClock.threadCpuNanos() - t0);
+        windowsProcessed++;
+        return r;
+    }
+
+    private int windowSamples(int periodUs) {
+        int n = (int) (windowMs * 1000L / periodUs);
+        if (n < MIN_WINDOW_SAMPLES) n = MIN_WINDOW_SAMPLES;
+        if (n > capacity) n = capacity;
+        return n;
+    }
+
+    /** Copy n ring entries starting at {@code start} to the front of {@code dst}, oldest first. */
+    private void unwrap(short[] ring, short[] dst, int start, int n) {
+        int first = Math.min(n, capacity - start);
+        System.arraycopy(ring, start, dst, 0, first);
+        System.arraycopy(ring, 0, dst, first, n - first);
+    }
+
+    private void unwrap(byte[] ring, byte[] dst, int start, int n) {
+        int first = Math.min(n, capacity - start);
+        System.arraycopy(ring, start, dst, 0, first);
+        System.arraycopy(ring, 0, dst, first, n - first);
+    }
+
+    private void push(float x, float y, float z) {
+        if (qX != null) {
+            qX[writePos] = FixedPointFeatures.toFixed(x);
+            qY[writePos] = FixedPointFeatures.toFixed(y);
+            qZ[writePos] = FixedPointFeatures.toFixed(z);
+            rX[writePos] = FixedPointFeatures.residual(x, qX[writePos]);
+            rY[writePos] = FixedPointFeatures.residual(y, qY[writePos]);
+            rZ[writePos] = FixedPointFeatures.residual(z, qZ[writePos]);
+        } else {
+            bufX[writePos] = x;
+            bufY[writePos] = y;
+            bufZ[writePos] = z;
+        }
+        writePos++;
+        if (writePos == capacity) writePos = 0;
+        if (count < capacity) count++;
+    }
+}
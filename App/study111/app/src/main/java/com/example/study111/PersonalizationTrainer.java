@@ -0,0 +1,269 @@
+package com.example.study111;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * On-device, incremental training of a per-user {@link ScoreCorrection}.
+ *
+ *  - Labelled windows come from user feedback (false pause -> stationary,
+ *    pause kept -> pick_up) and go into a fixed-size replay buffer
+ *    (primitive arrays, oldest overwritten).
+ *  - {@link #train} runs mini-batch SGD (softmax cross-entropy, L2 towards
+ *    the identity correction) until a step or time budget is used up, then
+ *    publishes a fresh immutable snapshot.
+ *  - Training waits until both classes have examples, so a handful of
+ *    "wrong pause" reports cannot teach it to never pause.
+ *
+ * Not thread-safe: call addExample/train/save/load from one background thread.
+ * {@link #getCorrection()} may be read from any thread.
+ */
+public final class PersonalizationTrainer {
+
+    public static final int DEFAULT_CAPACITY = 256;
+    private static final int FILE_VERSION = 1;
+
+    private final int numFeatures;
+    private final int numClasses;
+    private final int capacity;
+
+    // Replay buffer
+    private final float[] exFeatures; // [slot * numFeatures + j]
+    private final float[] exScores;   // [slot * numClasses + k], model output before correction
+    private final byte[] exLabels;
+    private final int[] classCounts;
+    private int count = 0;
+    private int writePos = 0;
+
+    // Running feature statistics (Welford) for standardization
+    private final double[] runMean;
+    private final double[] runM2;
+    private long seen = 0;
+
+    // Working parameters (owned by the training thread)
+    private final float[] weights;
+    private final float[] bias;
+
+    // Scratch
+    private final float[] xhat, probs, gradW, gradB, mean, invStd;
+
+    private float learningRate = 0.05f;
+    private float l2 = 1e-3f;
+    private int batchSize = 16;
+    private long rng = 0x9E3779B97F4A7C15L;
+
+    private long version = 0;
+    private volatile ScoreCorrection published;
+
+    public PersonalizationTrainer(int numFeatures, int numClasses, int capacity) {
+        if (numFeatures <= 0 || numClasses < 2 || capacity <= 0) throw new IllegalArgumentException();
+        this.numFeatures = numFeatures;
+        this.numClasses = numClasses;
+        this.capacity = capacity;
+        exFeatures = new float[capacity * numFeatures];
+        exScores = new float[capacity * numClasses];
+        exLabels = new byte[capacity];
+        classCounts = new int[numClasses];
+        runMean = new double[numFeatures];
+        runM2 = new double[numFeatures];
+        weights = new float[numClasses * numFeatures];
+        bias = new float[numClasses];
+        xhat = new float[numFeatures];
+        probs = new float[numClasses];
+        gradW = new float[numClasses * numFeatures];
+        gradB = new float[numClasses];
+        mean = new float[numFeatures];
+        invStd = new float[numFeatures];
+    }
+
+    public void setLearningRate(float lr) { learningRate = lr; }
+    public void setL2(float l2) { this.l2 = l2; }
+    public void setBatchSize(int b) { batchSize = Math.max(1, b); }
+
+    /** Latest published correction, or null before the first successful training run. */
+    public ScoreCorrection getCorrection() { return published; }
+    public int getExampleCount() { return count; }
+    public int getClassCount(int k) { return classCounts[k]; }
+
+    /**
+     * Add one labelled window.
+     *
+     * @param features    model input features (length numFeatures)
+     * @param modelScores uncorrected model probabilities (length numClasses)
+     * @param label       true class index
+     */
+    public void addExample(float[] features, float[] modelScores, int label) {
+        if (features.length != numFeatures || modelScores.length != numClasses) {
+            throw new IllegalArgumentException("shape mismatch");
+        }
+        if (label < 0 || label >= numClasses) throw new IllegalArgumentException("label " + label);
+
+        if (count == capacity) classCounts[exLabels[writePos]]--;
+        System.arraycopy(features, 0, exFeatures, writePos * numFeatures, numFeatures);
+        System.arraycopy(modelScores, 0, exScores, writePos * numClasses, numClasses);
+        exLabels[writePos] = (byte) label;
+        classCounts[label]++;
+        writePos = (writePos + 1) % capacity;
+        if (count < capacity) count++;
+
+        seen++;
+        for (int j = 0; j < numFeatures; j++) {
+            double d = features[j] - runMean[j];
+            runMean[j] += d / seen;
+            runM2[j] += d * (features[j] - runMean[j]);
+        }
+    }
+
+    /** True once every class has at least one example. */
+    public boolean canTrain() {
+        for (int c : classCounts) if (c == 0) return false;
+        return true;
+    }
+
+    /**
+     * Run SGD mini-batches until {@code maxSteps} or {@code budgetNanos} is reached,
+     * then publish the result.
+     *
+     * @return number of mini-batch steps taken
+     */
+    public int train(int maxSteps, long budgetNanos) {
+        if (!canTrain()) return 0;
+        long start = System.nanoTime();
+        refreshStats();
+
+        int steps = 0;
+        int batch = Math.min(batchSize, count);
+        while (steps < maxSteps && System.nanoTime() - start < budgetNanos) {
+            Arrays.fill(gradW, 0f);
+            Arrays.fill(gradB, 0f);
+            for (int i = 0; i < batch; i++) {
+                accumulateGradient(nextIndex(count));
+            }
+            float scale = learningRate / batch;
+            for (int p = 0; p < weights.length; p++) {
+                weights[p] -= scale * gradW[p] + learningRate * l2 * weights[p];
+            }
+            for (int k = 0; k < numClasses; k++) {
+                bias[k] -= scale * gradB[k] + learningRate * l2 * bias[k];
+            }
+            steps++;
+        }
+
+        if (steps > 0) publish();
+        return steps;
+    }
+
+    private void refreshStats() {
+        for (int j = 0; j < numFeatures; j++) {
+            double var = (seen > 1) ? runM2[j] / (seen - 1) : 0;
+            mean[j] = (float) runMean[j];
+            invStd[j] = (var > 1e-12) ? (float) (1.0 / Math.sqrt(var)) : 0f;
+        }
+    }
+
+    private void accumulateGradient(int slot) {
+        int fOff = slot * numFeatures;
+        int sOff = slot * numClasses;
+        for (int j = 0; j < numFeatures; j++) {
+            xhat[j] = (exFeatures[fOff + j] - mean[j]) * invStd[j];
+        }
+        float maxZ = -Float.MAX_VALUE;
+        for (int k = 0; k < numClasses; k++) {
+            float z = (float) Math.log(Math.max(exScores[sOff + k], 1e-6f)) + bias[k];
+            int row = k * numFeatures;
+            for (int j = 0; j < numFeatures; j++) z += weights[row + j] * xhat[j];
+            probs[k] = z;
+            if (z > maxZ) maxZ = z;
+        }
+        float sum = 0f;
+        for (int k = 0; k < numClasses; k++) { probs[k] = (float) Math.exp(probs[k] - maxZ); sum += probs[k]; }
+        int label = exLabels[slot];
+        for (int k = 0; k < numClasses; k++) {
+            float g = probs[k] / sum - (k == label ? 1f : 0f);
+            gradB[k] += g;
+            int row = k * numFeatures;
+            for (int j = 0; j < numFeatures; j++) gradW[row + j] += g * xhat[j];
+        }
+    }
+
+    private void publish() {
+        published = new ScoreCorrection(numFeatures, numClasses,
+                weights.clone(), bias.clone(), mean.clone(), invStd.clone(), ++version);
+    }
+
+    private int nextIndex(int bound) {
+        // xorshift64*
+        rng ^= rng >>> 12; rng ^= rng << 25; rng ^= rng >>> 27;
+        long r = (rng * 0x2545F4914F6CDD1DL) >>> 33;
+        return (int) (r % bound);
+    }
+
+    // -----------------------------------
+    // Persistence
+    // -----------------------------------
+
+    /** Save replay buffer, statistics and current parameters. */
+    public void save(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        out.writeInt(numFeatures);
+        out.writeInt(numClasses);
+        out.writeInt(count);
+        // Oldest first, so reloading preserves order
+        int start = (count == capacity) ? writePos : 0;
+        for (int i = 0; i < count; i++) {
+            int slot = (start + i) % capacity;
+            for (int j = 0; j < numFeatures; j++) out.writeFloat(exFeatures[slot * numFeatures + j]);
+            for (int k = 0; k < numClasses; k++) out.writeFloat(exScores[slot * numClasses + k]);
+            out.writeByte(exLabels[slot]);
+        }
+        for (float v : weights) out.writeFloat(v);
+        for (float v : bias) out.writeFloat(v);
+    }
+
+    /**
+     * Replace the current state with one written by {@link #save}; publishes the loaded
+     * parameters. The whole stream is read and validated first, so a truncated or corrupt
+     * file throws and leaves this trainer unchanged.
+     */
+    public void load(DataInputStream in) throws IOException {
+        if (in.readInt() != FILE_VERSION || in.readInt() != numFeatures || in.readInt() != numClasses) {
+            throw new IOException("Incompatible personalization state");
+        }
+        int n = in.readInt();
+        if (n < 0 || n > capacity) throw new IOException("Bad example count " + n);
+        float[] f = new float[n * numFeatures];
+        float[] s = new float[n * numClasses];
+        byte[] labels = new byte[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < numFeatures; j++) f[i * numFeatures + j] = in.readFloat();
+            for (int k = 0; k < numClasses; k++) s[i * numClasses + k] = in.readFloat();
+            labels[i] = in.readByte();
+            if (labels[i] < 0 || labels[i] >= numClasses) throw new IOException("Bad label " + labels[i]);
+        }
+        float[] w = new float[weights.length];
+        float[] b = new float[numClasses];
+        for (int p = 0; p < w.length; p++) w[p] = in.readFloat();
+        for (int k = 0; k < numClasses; k++) b[k] = in.readFloat();
+
+        // Valid: replace everything
+        count = 0;
+        writePos = 0;
+        seen = 0;
+        Arrays.fill(classCounts, 0);
+        Arrays.fill(runMean, 0);
+        Arrays.fill(runM2, 0);
+        float[] fi = new float[numFeatures];
+        float[] si = new float[numClasses];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(f, i * numFeatures, fi, 0, numFeatures);
+            System.arraycopy(s, i * numClasses, si, 0, numClasses);
+            addExample(fi, si, labels[i]);
+        }
+        System.arraycopy(w, 0, weights, 0, w.length);
+        System.arraycopy(b, 0, bias, 0, numClasses);
+        refreshStats();
+        publish();
+    }
+}
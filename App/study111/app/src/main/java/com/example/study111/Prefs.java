@@ -9,6 +9,7 @@ public final class Prefs {
     private static final String PREFS_NAME = "pomodoro_prefs";
     public static final String KEY_FOCUS_MIN  = "focus_min";
     public static final String KEY_BREAK_MIN  = "break_min";
+    public static final String KEY_RECORD_MOTION = "record_motion";
 
     public static final int DEFAULT_FOCUS_MIN = 25;
     public static final int DEFAULT_BREAK_MIN = 5;
@@ -32,4 +33,13 @@ public final class Prefs {
     public static void setBreakMin(Context ctx, int min) {
         get(ctx).edit().putInt(KEY_BREAK_MIN, Math.max(1, min)).apply();
     }
+
+    /** Whether raw accelerometer samples are stored during Focus (for export). Off by default. */
+    public static boolean isRecordMotion(Context ctx) {
+        return get(ctx).getBoolean(KEY_RECORD_MOTION, false);
+    }
+
+    public static void setRecordMotion(Context ctx, boolean record) {
+        get(ctx).edit().putBoolean(KEY_RECORD_MOTION, record).apply();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.example.study111;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Live pick_up score line for the current session.
+ *
+ * Pulls at most one point per two pixels out of a {@link ScoreTimeline} with
+ * {@link ScoreTimeline#downsample} (LTTB), so drawing cost stays flat however long the
+ * session runs. Buffers are reused; call {@link #update} from the UI thread.
+ */
+public final class ScoreChartView extends View {
+
+    private static final int MIN_POINTS = 3;
+
+    private final Paint line = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint axis = new Paint();
+    private final Path path = new Path();
+
+    private long[] times = new long[0];
+    private float[] scores = new float[0];
+    private int count = 0;
+
+    public ScoreChartView(Context context) {
+        this(context, null);
+    }
+
+    public ScoreChartView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        line.setStyle(Paint.Style.STROKE);
+        line.setStrokeWidth(3f);
+        line.setColor(Color.parseColor("#333333"));
+        axis.setColor(Color.parseColor("#66333333"));
+    }
+
+    /** Redraw class {@code classIdx} of the last {@code spanMs} ending at {@code nowMs}. */
+    public void update(ScoreTimeline timeline, int classIdx, long nowMs, long spanMs) {
+        int maxPoints = Math.max(MIN_POINTS, getWidth() / 2);
+        if (times.length != maxPoints) {
+            times = new long[maxPoints];
+            scores = new float[maxPoints];
+        }
+        count = timeline.downsample(classIdx, nowMs - spanMs, nowMs, maxPoints, times, scores);
+        invalidate();
+    }
+
+    /** Forget the drawn line (e.g. on session reset). */
+    public void clear() {
+        count = 0;
+        invalidate();
+    }
+
+    @Override protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        float w = getWidth(), h = getHeight();
+        canvas.drawLine(0, h - 1, w, h - 1, axis);
+        if (count < 2) return;
+
+        long t0 = times[0];
+        float span = Math.max(1L, times[count - 1] - t0);
+        path.rewind();
+        for (int i = 0; i < count; i++) {
+            float x = (times[i] - t0) / span * w;
+            float y = (1f - scores[i]) * (h - 2) + 1;
+            if (i == 0) path.moveTo(x, y); else path.lineTo(x, y);
+        }
+        canvas.drawPath(path, line);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.study111;
+
+/**
+ * Immutable per-user correction applied to the model's class scores.
+ *
+ *   z_k = ln(p_k) + b_k + sum_j W[k][j] * (f_j - mean_j) * invStd_j
+ *   p'  = softmax(z)
+ *
+ * With W = 0 and b = 0 the scores pass through unchanged. Instances are published
+ * whole by {@link PersonalizationTrainer}, so the scoring path sees either the old
+ * or the new parameters, never a mix.
+ */
+public final class ScoreCorrection {
+
+    private static final float MIN_PROB = 1e-6f;
+
+    final int numFeatures;
+    final int numClasses;
+    final float[] weights;  // [class * numFeatures + feature]
+    final float[] bias;     // [class]
+    final float[] mean;     // [feature]
+    final float[] invStd;   // [feature]
+    final long version;
+
+    ScoreCorrection(int numFeatures, int numClasses, float[] weights, float[] bias,
+                    float[] mean, float[] invStd, long version) {
+        this.numFeatures = numFeatures;
+        this.numClasses = numClasses;
+        this.weights = weights;
+        this.bias = bias;
+        this.mean = mean;
+        this.invStd = invStd;
+        this.version = version;
+    }
+
+    public long getVersion() { return version; }
+
+    /**
+     * Correct {@code scores} (probabilities) in place. No allocation.
+     * Leaves scores untouched if the shapes do not match.
+     */
+    public void apply(float[] features, float[] scores) {
+        if (features == null || features.length != numFeatures || scores.length != numClasses) return;
+
+        float maxZ = -Float.MAX_VALUE;
+        for (int k = 0; k < numClasses; k++) {
+            float z = (float) Math.log(Math.max(scores[k], MIN_PROB)) + bias[k];
+            int row = k * numFeatures;
+            for (int j = 0; j < numFeatures; j++) {
+                z += weights[row + j] * (features[j] - mean[j]) * invStd[j];
+            }
+            scores[k] = z;
+            if (z > maxZ) maxZ = z;
+        }
+        float sum = 0f;
+        for (int k = 0; k < numClasses; k++) {
+            float e = (float) Math.exp(scores[k] - maxZ);
+            scores[k] = e;
+            sum += e;
+        }
+        for (int k = 0; k < numClasses; k++) scores[k] /= sum;
+    }
+}
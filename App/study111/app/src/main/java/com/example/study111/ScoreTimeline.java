@@ -0,0 +1,246 @@
+package com.example.study111;
+
+/**
+ * Fixed-memory history of classifier scores for the live session chart.
+ *
+ * Samples are stored column-wise in a ring buffer instead of keeping every
+ * {@link TFLiteClassifier.Result}:
+ *  - time   : int millisecond offset from the first sample of the session
+ *  - label  : byte index of the top class
+ *  - scores : one short column per class, score in [0,1] quantized to Q15
+ *
+ * That is 4 + 1 + 2*classes bytes per sample (9 bytes for stationary/pick_up),
+ * so a 25 min session at 10 Hz fits in ~135 KB with no per-sample objects.
+ * When full, the oldest samples are overwritten.
+ *
+ * {@link #downsample} reduces any time range to a bounded number of points with
+ * Largest-Triangle-Three-Buckets (LTTB), which keeps spikes visible when zoomed out;
+ * {@link ScoreChartView} draws the result.
+ *
+ * Not thread-safe; append and read from the UI thread.
+ */
+public final class ScoreTimeline {
+
+    private static final float Q15 = 32767f;
+
+    private final int capacity;
+    private final int numClasses;
+
+    // Columns (ring buffer, oldest sample at 'head')
+    private final int[] offsetMs;
+    private final byte[] labels;
+    private final short[][] scores; // [class][sample]
+
+    private int head = 0;
+    private int size = 0;
+    private long baseTimeMs = 0;
+
+    public ScoreTimeline(int capacity, int numClasses) {
+        if (capacity < 3) throw new IllegalArgumentException("capacity must be >= 3");
+        if (numClasses < 1 || numClasses > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("numClasses out of range: " + numClasses);
+        }
+        this.capacity = capacity;
+        this.numClasses = numClasses;
+        this.offsetMs = new int[capacity];
+        this.labels = new byte[capacity];
+        this.scores = new short[numClasses][capacity];
+    }
+
+    /** Drop all samples; the next append becomes the new time base. */
+    public void clear() {
+        head = 0;
+        size = 0;
+        baseTimeMs = 0;
+    }
+
+    public int size() { return size; }
+    public int capacity() { return capacity; }
+    public int numClasses() { return numClasses; }
+
+    /**
+     * Append one classifier result.
+     *
+     * @param timeMs     monotonic time (e.g. SystemClock.elapsedRealtime()); older than the
+     *                   last sample is clamped so offsets stay sorted
+     * @param labelIndex index of the top class
+     * @param classScores per-class scores, expected in [0,1]; missing entries are stored as 0
+     */
+    public void append(long timeMs, int labelIndex, float[] classScores) {
+        if (size == 0) baseTimeMs = timeMs;
+
+        long delta = timeMs - baseTimeMs;
+        if (delta > Integer.MAX_VALUE) delta = Integer.MAX_VALUE; // ~24 days, plenty
+        int off = (int) delta;
+        if (size > 0) {
+            int last = offsetMs[physical(size - 1)];
+            if (off < last) off = last;
+        }
+
+        int slot;
+        if (size < capacity) {
+            slot = physical(size);
+            size++;
+        } else {
+            slot = head; // overwrite oldest
+            head = (head + 1) % capacity;
+        }
+
+        offsetMs[slot] = off;
+        labels[slot] = (byte) labelIndex;
+        for (int c = 0; c < numClasses; c++) {
+            float s = (classScores != null && c < classScores.length) ? classScores[c] : 0f;
+            scores[c][slot] = quantize(s);
+        }
+    }
+
+    public long timeAt(int i)  { return baseTimeMs + offsetMs[physical(checkIndex(i))]; }
+    public int labelAt(int i)  { return labels[physical(checkIndex(i))]; }
+    public float scoreAt(int i, int classIdx) {
+        return dequantize(scores[classIdx][physical(checkIndex(i))]);
+    }
+
+    /**
+     * Downsample the scores of one class within [fromMs, toMs] into at most
+     * {@code maxPoints} points using LTTB. Output arrays must hold {@code maxPoints}.
+     *
+     * @return number of points written
+     */
+    public int downsample(int classIdx, long fromMs, long toMs, int maxPoints,
+                          long[] outTimeMs, float[] outScore) {
+        if (classIdx < 0 || classIdx >= numClasses) {
+            throw new IllegalArgumentException("class out of range: " + classIdx);
+        }
+        if (maxPoints < 3) throw new IllegalArgumentException("maxPoints must be >= 3");
+        if (size == 0 || toMs < fromMs) return 0;
+
+        int start = lowerBound(fromMs);
+        int end = upperBound(toMs); // exclusive
+        int n = end - start;
+        if (n <= 0) return 0;
+
+        final short[] col = scores[classIdx];
+
+        if (n <= maxPoints) {
+            for (int k = 0; k < n; k++) {
+                int p = physical(start + k);
+                outTimeMs[k] = baseTimeMs + offsetMs[p];
+                outScore[k] = dequantize(col[p]);
+            }
+            return n;
+        }
+
+        // LTTB: always keep first and last; pick one point per bucket in between
+        // that forms the largest triangle with the previous pick and the next bucket's average.
+        int out = 0;
+        int a = start;
+        outTimeMs[out] = baseTimeMs + offsetMs[physical(a)];
+        outScore[out] = dequantize(col[physical(a)]);
+        out++;
+
+        double bucketSize = (double) (n - 2) / (maxPoints - 2);
+        for (int b = 0; b < maxPoints - 2; b++) {
+            int bStart = start + 1 + (int) (b * bucketSize);
+            int bEnd   = start + 1 + (int) ((b + 1) * bucketSize);
+            if (bEnd > end - 1) bEnd = end - 1;
+
+            // Average of next bucket (or last point for the final bucket)
+            int nStart = bEnd;
+            int nEnd = start + 1 + (int) ((b + 2) * bucketSize);
+            if (nEnd > end) nEnd = end;
+            if (nStart >= nEnd) nStart = nEnd - 1;
+            double avgX = 0, avgY = 0;
+            for (int k = nStart; k < nEnd; k++) {
+                int p = physical(k);
+                avgX += offsetMs[p];
+                avgY += col[p];
+            }
+            int cnt = nEnd - nStart;
+            avgX /= cnt;
+            avgY /= cnt;
+
+            int pa = physical(a);
+            double ax = offsetMs[pa], ay = col[pa];
+            double maxArea = -1;
+            int pick = bStart;
+            for (int k = bStart; k < bEnd; k++) {
+                int p = physical(k);
+                double area = Math.abs((ax - avgX) * (col[p] - ay) - (ax - offsetMs[p]) * (avgY - ay));
+                if (area > maxArea) { maxArea = area; pick = k; }
+            }
+
+            int pp = physical(pick);
+            outTimeMs[out] = baseTimeMs + offsetMs[pp];
+            outScore[out] = dequantize(col[pp]);
+            out++;
+            a = pick;
+        }
+
+        int last = physical(end - 1);
+        outTimeMs[out] = baseTimeMs + offsetMs[last];
+        outScore[out] = dequantize(col[last]);
+        out++;
+        return out;
+    }
+
+    /** Approximate heap bytes used by the columns. */
+    public long memoryBytes() {
+        return (long) capacity * (4 + 1 + 2L * numClasses);
+    }
+
+    // -----------------------------------
+    // Helpers
+    // -----------------------------------
+    private int physical(int logical) {
+        int p = head + logical;
+        return (p >= capacity) ? p - capacity : p;
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        return i;
+    }
+
+    /**
+     * t relative to the base, clamped just outside the stored offset range [0, Integer.MAX_VALUE]
+     * so the subtraction cannot overflow for very old/new queries (Long.MIN_VALUE/MAX_VALUE).
+     */
+    private long relative(long t) {
+        if (t < baseTimeMs) return -1;
+        long rel = t - baseTimeMs;
+        if (rel < 0 || rel > Integer.MAX_VALUE) return Integer.MAX_VALUE + 1L; // rel < 0: overflowed
+        return rel;
+    }
+
+    /** First logical index with time >= t. */
+    private int lowerBound(long t) {
+        long rel = relative(t);
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (offsetMs[physical(mid)] < rel) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /** First logical index with time > t. */
+    private int upperBound(long t) {
+        long rel = relative(t);
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (offsetMs[physical(mid)] <= rel) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static short quantize(float s) {
+        if (!(s > 0f)) return 0; // also maps NaN to 0
+        if (s >= 1f) return Short.MAX_VALUE;
+        return (short) Math.round(s * Q15);
+    }
+
+    private static float dequantize(short q) {
+        return q / Q15;
+    }
+}
@@ -3,6 +3,7 @@ package com.example.study111;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.EditText;
 
 import androidx.annotation.Nullable;
@@ -14,6 +15,7 @@ public class SettingsActivity extends AppCompatActivity {
 
     private EditText focusInput;
     private EditText breakInput;
+    private CheckBox recordMotionCheck;
     private Button saveButton;
     private Button cancelButton;
 
@@ -28,6 +30,7 @@ public class SettingsActivity extends AppCompatActivity {
         MaterialToolbar toolbar = findViewById(R.id.settingsToolbar);
         focusInput   = findViewById(R.id.focusMinutesInput);
         breakInput   = findViewById(R.id.breakMinutesInput);
+        recordMotionCheck = findViewById(R.id.recordMotionCheck);
         saveButton   = findViewById(R.id.saveButton);
         cancelButton = findViewById(R.id.cancelButton);
 
@@ -36,6 +39,7 @@ public class SettingsActivity extends AppCompatActivity {
         origBreak = Prefs.getBreakMin(this);
         focusInput.setText(String.valueOf(origFocus));
         breakInput.setText(String.valueOf(origBreak));
+        recordMotionCheck.setChecked(Prefs.isRecordMotion(this));
 
         // Toolbar back arrow -> behave like Cancel (no save)
         toolbar.setNavigationOnClickListener(v -> {
@@ -48,6 +52,7 @@ public class SettingsActivity extends AppCompatActivity {
             int b = parseIntOrDefault(breakInput.getText().toString(), Prefs.DEFAULT_BREAK_MIN);
             Prefs.setFocusMin(this, f);
             Prefs.setBreakMin(this, b);
+            Prefs.setRecordMotion(this, recordMotionCheck.isChecked());
             setResult(RESULT_OK);
             finish();
         });
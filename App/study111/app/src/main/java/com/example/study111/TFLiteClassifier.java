@@ -23,14 +23,21 @@ import java.util.Arrays;
  *  - Can compute a placeholder feature vector from raw window [N][3]
  *    so the pipeline runs without crashing.
  *
- * Replace computeFeaturesFromWindow() with the real Edge Impulse DSP logic
+ * Replace MotionFeatures.compute() with the real Edge Impulse DSP logic
  * once you share the processing block details.
  */
 public class TFLiteClassifier {
 
     private static final String TAG = "TFLiteClassifier";
 
-    private final Interpreter interpreter;
+    /** Length of the feature vector produced by MotionFeatures.compute(). */
+    public static final int NUM_FEATURES = MotionFeatures.NUM_FEATURES;
+
+    // Released under memory pressure / when idle and rebuilt lazily from the mapped model
+    private Interpreter interpreter;
+    private final MappedByteBuffer model;
+    private final Interpreter.Options options;
+    private boolean closed = false;   // close() is final; release() is the reversible path
 
     // --- Model IO specs ---
     private final int[] inputShape;     // e.g. [1,39]
@@ -46,9 +53,26 @@ public class TFLiteClassifier {
     // Adjust label order to match your Edge Impulse project order if different.
     private final String[] labels = {"stationary", "pick_up"};
 
+    // Per-user correction from PersonalizationTrainer; swapped whole, read once per prediction.
+    private volatile ScoreCorrection correction;
+
+    // Features the first FC layer actually reads (others have all-zero weight columns)
+    private final FeaturePlan featurePlan;
+
+    // Integer-only extractor for low-end devices; created by the first fixed-point window
+    private FixedPointFeatures fixedFeatures;
+
+    // Reused interpreter input (rebuilt in place every prediction)
+    private ByteBuffer inputBuffer;
+
+    // Optional memo of raw model output keyed by the exact input bytes (null = disabled)
+    private InferenceCache cache;
+    private int cacheCapacity = 0;
+
     public TFLiteClassifier(AssetManager assets, String modelAssetName) throws IOException {
-        Interpreter.Options opts = new Interpreter.Options();
-        interpreter = new Interpreter(loadModelFile(assets, modelAssetName), opts);
+        options = new Interpreter.Options();
+        model = loadModelFile(assets, modelAssetName);
+        interpreter = new Interpreter(model, options);
 
         // Inspect input tensor
         Tensor in = interpreter.getInputTensor(0);
@@ -70,8 +94,13 @@ public class TFLiteClassifier {
         Log.d(TAG, "Output tensor shape: " + Arrays.toString(outputShape));
         Log.d(TAG, "Output tensor data type: " + outputType);
         Log.d(TAG, "Output quant params: scale=" + outScale + " zeroPoint=" + outZeroPoint);
+
+        featurePlan = FeaturePlan.analyze(model, NUM_FEATURES); // ALL if it can't be analyzed
+        Log.d(TAG, featurePlan.toString());
     }
 
+    public FeaturePlan getFeaturePlan() { return featurePlan; }
+
     private MappedByteBuffer loadModelFile(AssetManager am, String assetName) throws IOException {
         AssetFileDescriptor fd = am.openFd(assetName);
         FileInputStream fis = new FileInputStream(fd.getFileDescriptor());
@@ -79,11 +108,97 @@ public class TFLiteClassifier {
         return fc.map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getDeclaredLength());
     }
 
+    /**
+     * Enable memoization of model outputs keyed by the quantized input bytes.
+     * A still phone yields identical inputs window after window, so hits skip interpreter.run.
+     * Pass 0 to disable.
+     */
+    public void enableCache(int capacity) {
+        cacheCapacity = Math.max(0, capacity);
+        if (capacity <= 0) {
+            cache = null;
+            return;
+        }
+        cache = new InferenceCache(capacity, inputByteCount(), outputShape[outputShape.length - 1]);
+    }
+
+    /** Drop memoized outputs; must be called whenever the interpreter/model changes. */
+    public void invalidateCache() {
+        if (cache != null) cache.clear();
+    }
+
+    public long getCacheHits()      { return cache != null ? cache.getHits() : 0; }
+    public long getCacheMisses()    { return cache != null ? cache.getMisses() : 0; }
+    public long getCacheEvictions() { return cache != null ? cache.getEvictions() : 0; }
+
+    /** Install (or clear with null) the per-user score correction. Safe from any thread. */
+    public void setScoreCorrection(ScoreCorrection c) { correction = c; }
+
+    public boolean isLoaded() { return interpreter != null; }
+
+    /**
+     * Free the native interpreter (tensor arena, delegates), the input buffer and the
+     * inference cache. The model stays mapped: its clean file-backed pages are reclaimable
+     * by the kernel and keep the rebuild cheap. Call from the prediction thread.
+     *
+     * @return approximate Java/direct bytes dropped (native arena not included)
+     */
+    public long release() {
+        if (interpreter == null) return 0;
+        long bytes = 0;
+        interpreter.close();
+        interpreter = null;
+        if (inputBuffer != null) {
+            bytes += inputBuffer.capacity();
+            inputBuffer = null;
+        }
+        if (cache != null) {
+            bytes += cache.memoryBytes();
+            cache = null;
+        }
+        return bytes;
+    }
+
+    /**
+     * Rebuild whatever {@link #release()} dropped. Cheap no-op when already loaded.
+     *
+     * @return nanoseconds spent rebuilding (0 if nothing to do)
+     * @throws IllegalStateException after {@link #close()}
+     */
+    public long ensureLoaded() {
+        if (interpreter != null) return 0;
+        if (closed) throw new IllegalStateException("Classifier is closed");
+        long t0 = System.nanoTime();
+        model.rewind();
+        interpreter = new Interpreter(model, options);
+        if (cacheCapacity > 0) { // release() dropped it; a fresh one starts empty
+            cache = new InferenceCache(cacheCapacity, inputByteCount(), outputShape[outputShape.length - 1]);
+        }
+        return System.nanoTime() - t0;
+    }
+
     /* ------------------------------------------------------------------
      * Public API #1: supply raw accelerometer window [N][3]; we compute 39 features.
      * ------------------------------------------------------------------ */
     public Result predictFromWindow(float[][] windowXYZ) {
-        float[] features = computeFeaturesFromWindow(windowXYZ); // length 39
+        float[] features = MotionFeatures.compute(windowXYZ, featurePlan); // length 39, unused ones 0
+        return predictFeatures(features);
+    }
+
+    /* ------------------------------------------------------------------
+     * Public API #1b: Q9 int16 window plus residuals (see FixedPointFeatures),
+     * integer-only features. Matches #1 to within one input quantization step, resting
+     * windows included.
+     * ------------------------------------------------------------------ */
+    public Result predictFromFixedWindow(short[] x, short[] y, short[] z,
+                                         byte[] rx, byte[] ry, byte[] rz, int n) {
+        if (fixedFeatures == null) fixedFeatures = new FixedPointFeatures();
+        float[] features = fixedFeatures.compute(x, y, z, rx, ry, rz, n);
+        if (!featurePlan.isFull()) {
+            for (int j = 0; j < features.length; j++) {
+                if (!featurePlan.isNeeded(j)) features[j] = 0f; // same inputs as the planned float path
+            }
+        }
         return predictFeatures(features);
     }
 
@@ -97,10 +212,26 @@ public class TFLiteClassifier {
                     "Expected " + featureCountExpected + " features, got " + features.length);
         }
 
+        ensureLoaded(); // normally warmed up before Focus starts; this is the safety net
         ByteBuffer inBuf = buildInputBuffer(features);
 
-        // Run inference & return scores
-        float[] scores = runInference(inBuf);
+        // Run inference (or reuse a memoized identical input) & return scores
+        float[] modelScores;
+        if (cache != null) {
+            modelScores = new float[outputShape[outputShape.length - 1]];
+            if (!cache.get(inBuf, modelScores)) {
+                modelScores = runInference(inBuf);
+                cache.put(inBuf, modelScores);
+            }
+        } else {
+            modelScores = runInference(inBuf);
+        }
+        float[] scores = modelScores;
+        ScoreCorrection c = correction;
+        if (c != null) {
+            scores = modelScores.clone();
+            c.apply(features, scores);
+        }
 
         // Pick top class
         int topIdx = 0;
@@ -109,151 +240,27 @@ public class TFLiteClassifier {
             if (scores[i] > topVal) { topVal = scores[i]; topIdx = i; }
         }
         String lbl = (topIdx < labels.length) ? labels[topIdx] : ("class_" + topIdx);
-        return new Result(lbl, topVal, scores);
+        return new Result(lbl, topVal, scores, modelScores, features);
     }
 
-    /* ------------------------------------------------------------------
-     * Placeholder feature extraction (TEMP) — 39 features.
-     * Replace with exact Edge Impulse DSP once you give config.
-     *
-     * Features used here (index order shown):
-     *  0-2 mean(X,Y,Z)
-     *  3-5 std(X,Y,Z)
-     *  6-8 min(X,Y,Z)
-     *  9-11 max(X,Y,Z)
-     *  12-14 rms(X,Y,Z)
-     *  15-17 skew(X,Y,Z)
-     *  18-20 kurt(X,Y,Z)
-     *  21 mean(|g| magnitude)
-     *  22 std(|g|)
-     *  23 min(|g|)
-     *  24 max(|g|)
-     *  25 rms(|g|)
-     *  26 skew(|g|)
-     *  27 kurt(|g|)
-     *  28 corr(X,Y)
-     *  29 corr(Y,Z)
-     *  30 corr(X,Z)
-     *  31 energy(X)
-     *  32 energy(Y)
-     *  33 energy(Z)
-     *  34 energy(|g|)
-     *  35 rangeX = max-min
-     *  36 rangeY
-     *  37 rangeZ
-     *  38 rangeMag
-     * ------------------------------------------------------------------ */
-    private float[] computeFeaturesFromWindow(float[][] w) {
-        if (w == null || w.length == 0) return new float[39];
-        final int n = w.length;
-
-        // accumulate
-        double sumX=0,sumY=0,sumZ=0;
-        double minX=Double.MAX_VALUE,minY=Double.MAX_VALUE,minZ=Double.MAX_VALUE;
-        double maxX=-Double.MAX_VALUE,maxY=-Double.MAX_VALUE,maxZ=-Double.MAX_VALUE;
-
-        double sumMag=0;
-        double minMag=Double.MAX_VALUE,maxMag=-Double.MAX_VALUE;
-
-        for (float[] s : w) {
-            float x=s[0], y=s[1], z=s[2];
-            sumX+=x; sumY+=y; sumZ+=z;
-            if (x<minX)minX=x; if (y<minY)minY=y; if (z<minZ)minZ=z;
-            if (x>maxX)maxX=x; if (y>maxY)maxY=y; if (z>maxZ)maxZ=z;
-            double m=Math.sqrt(x*x+y*y+z*z);
-            sumMag+=m;
-            if (m<minMag)minMag=m;
-            if (m>maxMag)maxMag=m;
-        }
-        double meanX=sumX/n, meanY=sumY/n, meanZ=sumZ/n;
-        double meanMag=sumMag/n;
-
-        // var, skew, kurt, energy
-        double varX=0,varY=0,varZ=0,varMag=0;
-        double skewX=0,skewY=0,skewZ=0,skewMag=0;
-        double kurtX=0,kurtY=0,kurtZ=0,kurtMag=0;
-        double energyX=0,energyY=0,energyZ=0,energyMag=0;
-        double sumXY=0,sumYZ=0,sumXZ=0; // for correlation
-
-        for (float[] s : w) {
-            float x=s[0], y=s[1], z=s[2];
-            double dx=x-meanX, dy=y-meanY, dz=z-meanZ;
-            varX+=dx*dx; varY+=dy*dy; varZ+=dz*dz;
-            skewX+=dx*dx*dx; skewY+=dy*dy*dy; skewZ+=dz*dz*dz;
-            kurtX+=dx*dx*dx*dx; kurtY+=dy*dy*dy*dy; kurtZ+=dz*dz*dz*dz;
-            energyX+=x*x; energyY+=y*y; energyZ+=z*z;
-
-            double m=Math.sqrt(x*x+y*y+z*z);
-            double dm=m-meanMag;
-            varMag+=dm*dm;
-            skewMag+=dm*dm*dm;
-            kurtMag+=dm*dm*dm*dm;
-            energyMag+=m*m;
-
-            sumXY+=dx*dy;
-            sumYZ+=dy*dz;
-            sumXZ+=dx*dz;
-        }
-        varX/=n; varY/=n; varZ/=n; varMag/=n;
-        double stdX=Math.sqrt(varX), stdY=Math.sqrt(varY), stdZ=Math.sqrt(varZ), stdMag=Math.sqrt(varMag);
-
-        // Normalize skew/kurt
-        if (stdX>0) { skewX/= (n*stdX*stdX*stdX); kurtX/= (n*varX*varX); }
-        if (stdY>0) { skewY/= (n*stdY*stdY*stdY); kurtY/= (n*varY*varY); }
-        if (stdZ>0) { skewZ/= (n*stdZ*stdZ*stdZ); kurtZ/= (n*varZ*varZ); }
-        if (stdMag>0){ skewMag/=(n*stdMag*stdMag*stdMag); kurtMag/=(n*varMag*varMag); }
-
-        // Correlations
-        double corrXY = (stdX>0 && stdY>0) ? (sumXY/n)/(stdX*stdY) : 0;
-        double corrYZ = (stdY>0 && stdZ>0) ? (sumYZ/n)/(stdY*stdZ) : 0;
-        double corrXZ = (stdX>0 && stdZ>0) ? (sumXZ/n)/(stdX*stdZ) : 0;
-
-        // RMS
-        double rmsX=Math.sqrt(energyX/n);
-        double rmsY=Math.sqrt(energyY/n);
-        double rmsZ=Math.sqrt(energyZ/n);
-        double rmsMag=Math.sqrt(energyMag/n);
-
-        float[] f = new float[39];
-        int i=0;
-        f[i++]=(float)meanX; f[i++]=(float)meanY; f[i++]=(float)meanZ;
-        f[i++]=(float)stdX;  f[i++]=(float)stdY;  f[i++]=(float)stdZ;
-        f[i++]=(float)minX;  f[i++]=(float)minY;  f[i++]=(float)minZ;
-        f[i++]=(float)maxX;  f[i++]=(float)maxY;  f[i++]=(float)maxZ;
-        f[i++]=(float)rmsX;  f[i++]=(float)rmsY;  f[i++]=(float)rmsZ;
-        f[i++]=(float)skewX; f[i++]=(float)skewY; f[i++]=(float)skewZ;
-        f[i++]=(float)kurtX; f[i++]=(float)kurtY; f[i++]=(float)kurtZ;
-        f[i++]=(float)meanMag;
-        f[i++]=(float)stdMag;
-        f[i++]=(float)minMag;
-        f[i++]=(float)maxMag;
-        f[i++]=(float)rmsMag;
-        f[i++]=(float)skewMag;
-        f[i++]=(float)kurtMag;
-        f[i++]=(float)corrXY;
-        f[i++]=(float)corrYZ;
-        f[i++]=(float)corrXZ;
-        f[i++]=(float)energyX;
-        f[i++]=(float)energyY;
-        f[i++]=(float)energyZ;
-        f[i++]=(float)energyMag;
-        f[i++]=(float)(maxX-minX);
-        f[i++]=(float)(maxY-minY);
-        f[i++]=(float)(maxZ-minZ);
-        f[i++]=(float)(maxMag-minMag);
-        // 39 filled.
-
-        return f;
+    private int inputByteCount() {
+        int numElements = 1;
+        for (int s : inputShape) numElements *= s; // [1,39] => 39
+        boolean quant = (inputType == DataType.UINT8 || inputType == DataType.INT8);
+        return numElements * (quant ? 1 : 4);
     }
 
-    // Build input buffer for interpreter (handles INT8 vs float)
+    // Build input buffer for interpreter (handles INT8 vs float); reuses one direct buffer
     private ByteBuffer buildInputBuffer(float[] features) {
         int numElements = 1;
         for (int s : inputShape) numElements *= s; // [1,39] => 39
         boolean quant = (inputType == DataType.UINT8 || inputType == DataType.INT8);
-        int bytesPer = quant ? 1 : 4;
-        ByteBuffer buf = ByteBuffer.allocateDirect(numElements * bytesPer);
-        buf.order(ByteOrder.nativeOrder());
+        if (inputBuffer == null) {
+            inputBuffer = ByteBuffer.allocateDirect(inputByteCount());
+            inputBuffer.order(ByteOrder.nativeOrder());
+        }
+        ByteBuffer buf = inputBuffer;
+        buf.clear();
 
         if (quant) {
             int min = (inputType == DataType.INT8) ? -128 : 0;
@@ -296,13 +303,22 @@ public class TFLiteClassifier {
         return scores;
     }
 
-    public void close() { interpreter.close(); }
+    /** Release for good: later predictions throw instead of rebuilding a leaked interpreter. */
+    public void close() {
+        closed = true;
+        release();
+    }
 
     // Result container
     public static class Result {
         public final String label;
         public final float confidence;
-        public final float[] scores;
-        Result(String l, float c, float[] s) { label=l; confidence=c; scores=s; }
+        public final float[] scores;       // after per-user correction (if any)
+        public final float[] modelScores;  // raw model output
+        public final float[] features;     // model input, kept for feedback/training
+        Result(String l, float c, float[] s) { this(l, c, s, s, null); }
+        Result(String l, float c, float[] s, float[] m, float[] f) {
+            label=l; confidence=c; scores=s; modelScores=m; features=f;
+        }
     }
 }
@@ -0,0 +1,97 @@
+package com.example.study111;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DetectionGovernorTest {
+
+    /** Simulated device: fixed CPU cost per classified window plus a per-sample cost. */
+    private static long simulate(DetectionGovernor g, long startNs, int seconds,
+                                 long cpuPerWindowNs, long cpuPerSampleNs) {
+        long t = startNs;
+        long end = startNs + seconds * 1_000_000_000L;
+        long nextWindowNs = t;
+        int hops = 0;
+        while (t < end) {
+            g.onSensorEvent(t);
+            if (t >= nextWindowNs) {
+                nextWindowNs = t + g.getHopMs() * 1_000_000L;
+                if (++hops % g.getInferenceStride() == 0) {
+                    g.onWindowProcessed(cpuPerWindowNs + cpuPerSampleNs * 2_000_000L / g.getSamplingPeriodUs());
+                }
+            }
+            g.maybeAdjust(t);
+            t += g.getSamplingPeriodUs() * 1_000L;
+        }
+        return t;
+    }
+
+    @Test
+    public void expensiveWindows_backOffUntilWithinBudget() {
+        DetectionGovernor.Config cfg = new DetectionGovernor.Config();
+        cfg.cpuBudgetNsPerSec = 2_000_000L; // 2 ms/s
+        DetectionGovernor g = new DetectionGovernor(cfg);
+
+        long t = simulate(g, 0, 120, 3_000_000L, 0);
+
+        assertTrue(g.getAdjustmentCount() > 0);
+        assertTrue("latency bound kept", g.getWorstCaseLatencyMs() <= cfg.maxLatencyMs);
+        // Measure one more interval at the settled config
+        simulate(g, t, 10, 3_000_000L, 0);
+        assertTrue("cpu " + g.getCpuNsPerSec(), g.getCpuNsPerSec() <= cfg.cpuBudgetNsPerSec);
+    }
+
+    @Test
+    public void cheapWindows_upgradeToFinestSettings() {
+        DetectionGovernor.Config cfg = new DetectionGovernor.Config();
+        cfg.initialSamplingPeriodUs = cfg.maxSamplingPeriodUs;
+        cfg.initialHopMs = 1_000;
+        DetectionGovernor g = new DetectionGovernor(cfg);
+
+        simulate(g, 0, 120, 10_000L, 0);
+
+        assertEquals(cfg.minSamplingPeriodUs, g.getSamplingPeriodUs());
+        assertEquals(cfg.minHopMs, g.getHopMs());
+        assertEquals(1, g.getInferenceStride());
+    }
+
+    @Test
+    public void unreachableBudget_neverExceedsMaxLatency() {
+        DetectionGovernor.Config cfg = new DetectionGovernor.Config();
+        cfg.cpuBudgetNsPerSec = 1_000L; // impossible
+        cfg.maxLatencyMs = 1_500;
+        DetectionGovernor g = new DetectionGovernor(cfg);
+
+        long t = 0;
+        for (int i = 0; i < 20; i++) {
+            t = simulate(g, t, 10, 5_000_000L, 0);
+            assertTrue(g.getWorstCaseLatencyMs() <= cfg.maxLatencyMs);
+        }
+    }
+
+    @Test
+    public void highEventRate_slowsSampling() {
+        DetectionGovernor.Config cfg = new DetectionGovernor.Config();
+        cfg.maxEventRateHz = 20f;
+        cfg.minSamplingPeriodUs = cfg.initialSamplingPeriodUs = 20_000; // 50 Hz
+        DetectionGovernor g = new DetectionGovernor(cfg);
+
+        simulate(g, 0, 60, 0, 0);
+
+        assertTrue(g.getSamplingPeriodUs() >= 50_000);
+        assertTrue(g.getEventRateHz() <= 20f);
+    }
+
+    @Test
+    public void defaultsNeverSampleFasterThanBaseline() {
+        // The budget doesn't see event delivery cost; cheap windows must not speed sampling up
+        DetectionGovernor g = new DetectionGovernor();
+        long t = 0;
+        for (int i = 0; i < 30; i++) {
+            t = simulate(g, t, 10, 1_000L, 0);
+            assertTrue(g.getSamplingPeriodUs() >= 200_000);
+        }
+        assertTrue(g.getEventRateHz() <= 5.1f);
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.study111;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DirectReportParserTest {
+
+    private static final int SLOTS = 8;
+    private static final int TOKEN = 7;
+
+    /** Writes reports into a byte[] ring the way the sensor hub does (counter last). */
+    private static final class FakeHub implements DirectReportParser.Source {
+        final ByteBuffer ring = ByteBuffer.allocate(SLOTS * DirectReportParser.REPORT_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int slot = 0;
+        int counter;
+        Runnable onRead; // lets a test interleave a write with the reader
+
+        FakeHub(int firstCounter) { counter = firstCounter; }
+
+        void write(int token, long tsNs, float x) {
+            int base = slot * DirectReportParser.REPORT_SIZE;
+            ring.putInt(base + DirectReportParser.OFFSET_SIZE, DirectReportParser.REPORT_SIZE);
+            ring.putInt(base + DirectReportParser.OFFSET_TOKEN, token);
+            ring.putInt(base + DirectReportParser.OFFSET_TYPE, 1);
+            ring.putLong(base + DirectReportParser.OFFSET_TIMESTAMP, tsNs);
+            ring.putFloat(base + DirectReportParser.OFFSET_DATA, x);
+            ring.putFloat(base + DirectReportParser.OFFSET_DATA + 4, 0f);
+            ring.putFloat(base + DirectReportParser.OFFSET_DATA + 8, 9.81f);
+            ring.putInt(base + DirectReportParser.OFFSET_COUNTER, counter);
+            counter++;
+            if (counter == 0) counter = 1;
+            slot = (slot + 1) % SLOTS;
+        }
+
+        void write(long tsNs, float x) { write(TOKEN, tsNs, x); }
+
+        @Override public void read(int offset, byte[] dst, int dstOffset, int length) {
+            System.arraycopy(ring.array(), offset, dst, dstOffset, length);
+            if (onRead != null) {
+                Runnable r = onRead;
+                onRead = null;
+                r.run();
+            }
+        }
+    }
+
+    private static final class Collector implements DirectReportParser.Sink {
+        final List<Float> xs = new ArrayList<>();
+        final List<Long> ts = new ArrayList<>();
+
+        @Override public void onSample(float x, float y, float z, long timestampNs) {
+            xs.add(x);
+            ts.add(timestampNs);
+            assertEquals(9.81f, z, 0f);
+        }
+    }
+
+    private static DirectReportParser parser() {
+        return new DirectReportParser(SLOTS * DirectReportParser.REPORT_SIZE, TOKEN);
+    }
+
+    @Test
+    public void emptyRingYieldsNothing() {
+        assertEquals(0, parser().drain(new FakeHub(1), new Collector()));
+    }
+
+    @Test
+    public void readsReportsInOrderAcrossBufferWrap() {
+        FakeHub hub = new FakeHub(1);
+        DirectReportParser p = parser();
+        Collector c = new Collector();
+        for (int i = 0; i < 5; i++) hub.write(i * 1_000L, i);
+        assertEquals(5, p.drain(hub, c));
+        for (int i = 5; i < 12; i++) hub.write(i * 1_000L, i); // wraps the 8-slot ring
+        assertEquals(7, p.drain(hub, c));
+
+        assertEquals(12, c.xs.size());
+        for (int i = 0; i < 12; i++) {
+            assertEquals((float) i, c.xs.get(i), 0f);
+            assertEquals(i * 1_000L, (long) c.ts.get(i));
+        }
+        assertEquals(0, p.getLost());
+    }
+
+    @Test
+    public void countsLostReportsWhenLapped() {
+        FakeHub hub = new FakeHub(1);
+        DirectReportParser p = parser();
+        Collector c = new Collector();
+        hub.write(0, 0);
+        p.drain(hub, c);
+        for (int i = 1; i <= 12; i++) hub.write(i, i); // 12 written into 8 slots: 4 overwritten
+
+        p.drain(hub, c);
+        assertEquals(4, p.getLost());
+        assertEquals(9, p.getReceived());
+        assertEquals(12f, c.xs.get(c.xs.size() - 1), 0f);
+        assertEquals(5f, c.xs.get(1), 0f);
+    }
+
+    @Test
+    public void followsCounterWrapAround() {
+        FakeHub hub = new FakeHub(-3); // 0xFFFFFFFD: three reports before the uint32 wraps
+        DirectReportParser p = parser();
+        Collector c = new Collector();
+        p.resync(0, -3);
+        for (int i = 0; i < 6; i++) hub.write(i, i);
+
+        assertEquals(6, p.drain(hub, c));
+        assertEquals(0, p.getLost());
+        assertEquals(1, p.getWraps());
+        assertEquals(0, p.drain(hub, c)); // nothing new after the wrap either
+    }
+
+    @Test
+    public void dropsTornReportAndResyncs() {
+        FakeHub hub = new FakeHub(1);
+        DirectReportParser p = parser();
+        Collector c = new Collector();
+        hub.write(0, 0);
+        // While the parser copies slot 0, the hub laps the whole ring and rewrites it
+        hub.onRead = () -> { for (int i = 1; i <= SLOTS; i++) hub.write(i, i); };
+
+        p.drain(hub, c);
+        assertEquals(1, p.getTorn());
+        assertEquals(1, p.getLost());
+        assertEquals(SLOTS, c.xs.size());
+        assertEquals(1f, c.xs.get(0), 0f);
+    }
+
+    @Test
+    public void dropsReportOverwrittenAfterCopy() {
+        FakeHub hub = new FakeHub(1);
+        DirectReportParser p = parser();
+        Collector c = new Collector();
+        hub.write(0, 0);
+        // Counter pre-read and payload copy both see report 1; the hub laps before the re-read
+        hub.onRead = () -> hub.onRead = () -> { for (int i = 1; i <= SLOTS; i++) hub.write(i, i); };
+
+        p.drain(hub, c);
+        assertEquals(1, p.getTorn());
+        assertEquals(SLOTS, c.xs.size());
+        assertEquals(1f, c.xs.get(0), 0f);
+    }
+
+    @Test
+    public void decimationAveragesRequestedPeriod() {
+        FakeHub hub = new FakeHub(1);
+        DirectReportParser p = parser();
+        p.setMinIntervalNs(66_000_000L); // governor period out of a 50 Hz (RATE_NORMAL) stream
+        Collector c = new Collector();
+        for (int i = 0; i < 500; i++) { // 10 s, drained every few reports
+            hub.write(i * 20_000_000L, i);
+            if (i % 4 == 3) p.drain(hub, c);
+        }
+        p.drain(hub, c);
+
+        assertEquals(0, p.getLost());
+        int n = c.ts.size();
+        double meanMs = (c.ts.get(n - 1) - c.ts.get(0)) / 1e6 / (n - 1);
+        assertEquals(66.0, meanMs, 1.0);
+        for (int i = 1; i < n; i++) {
+            long gap = c.ts.get(i) - c.ts.get(i - 1);
+            assertTrue("gap " + gap, gap == 60_000_000L || gap == 80_000_000L);
+        }
+    }
+
+    @Test
+    public void skipsOtherTokensAndDecimates() {
+        FakeHub hub = new FakeHub(1);
+        DirectReportParser p = parser();
+        p.setMinIntervalNs(20_000_000L); // 50 Hz out of a 200 Hz stream
+        Collector c = new Collector();
+        hub.write(TOKEN + 1, 0, -1f);
+        for (int i = 0; i < 6; i++) hub.write(i * 5_000_000L, i);
+
+        p.drain(hub, c);
+        assertEquals(2, c.xs.size());
+        assertEquals(0f, c.xs.get(0), 0f);
+        assertEquals(4f, c.xs.get(1), 0f);
+        assertEquals(4, p.getDecimated());
+    }
+
+    @Test
+    public void distanceSkipsZero() {
+        assertEquals(1, DirectReportParser.distance(-1, 1));
+        assertEquals(-1, DirectReportParser.distance(1, -1));
+        assertEquals(3, DirectReportParser.distance(5, 8));
+    }
+}
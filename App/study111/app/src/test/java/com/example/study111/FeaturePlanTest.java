@@ -0,0 +1,402 @@
+package com.example.study111;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class FeaturePlanTest {
+
+    private static final int F = MotionFeatures.NUM_FEATURES;
+    private static final int UNITS = 6;
+
+    // -----------------------------------
+    // Minimal front-to-back flatbuffer writer (every field is a 4-byte slot)
+    // -----------------------------------
+    private static final class Fb {
+        final ByteBuffer b = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        Fb() { b.putInt(0); } // root offset, patched later
+
+        int table(int fields) {
+            align();
+            int vtable = b.position();
+            b.putShort((short) (4 + 2 * fields));
+            b.putShort((short) (4 + 4 * fields));
+            for (int i = 0; i < fields; i++) b.putShort((short) (4 + 4 * i));
+            align();
+            int table = b.position();
+            b.putInt(table - vtable);
+            for (int i = 0; i < fields; i++) b.putInt(0);
+            return table;
+        }
+
+        void setInt(int table, int field, int v) { b.putInt(table + 4 + 4 * field, v); }
+
+        /** Mark a field as not present (vtable offset 0), as a writer omits defaults. */
+        void absent(int table, int field) {
+            int vtable = table - b.getInt(table);
+            b.putShort(vtable + 4 + 2 * field, (short) 0);
+        }
+
+        void setRef(int table, int field, int target) {
+            int pos = table + 4 + 4 * field;
+            b.putInt(pos, target - pos);
+        }
+
+        int intVector(int... v) {
+            align();
+            int p = b.position();
+            b.putInt(v.length);
+            for (int x : v) b.putInt(x);
+            return p;
+        }
+
+        int longVector(long... v) {
+            align();
+            int p = b.position();
+            b.putInt(v.length);
+            for (long x : v) b.putLong(x);
+            return p;
+        }
+
+        int byteVector(byte[] v) {
+            align();
+            int p = b.position();
+            b.putInt(v.length);
+            b.put(v);
+            return p;
+        }
+
+        /** Vector of table references; fill with {@link #setElem}. */
+        int refVector(int n) {
+            align();
+            int p = b.position();
+            b.putInt(n);
+            for (int i = 0; i < n; i++) b.putInt(0);
+            return p;
+        }
+
+        void setElem(int vector, int i, int target) {
+            int pos = vector + 4 + 4 * i;
+            b.putInt(pos, target - pos);
+        }
+
+        private void align() {
+            while (b.position() % 4 != 0) b.put((byte) 0);
+        }
+
+        ByteBuffer finish(int root) {
+            b.putInt(0, root);
+            b.flip();
+            return b;
+        }
+    }
+
+    /** What {@link #fcModel(Spec)} writes; defaults are a plain INT8 FC layer. */
+    private static final class Spec {
+        byte[] weights;
+        long[] weightZeroPoints = {0};
+        int quantizedDimension = 0;
+        int builtin = 9;             // FULLY_CONNECTED
+        int opcodeIndex = 0;
+        int weightsFormat = -1;      // -1: no FullyConnectedOptions table
+        boolean sparse = false;
+
+        Spec(byte[] weights, long weightZeroPoint) {
+            this.weights = weights;
+            this.weightZeroPoints = new long[]{weightZeroPoint};
+        }
+    }
+
+    /** input(0) -> FULLY_CONNECTED(weights=tensor 1) -> output(2); INT8 weights [UNITS][F]. */
+    private static ByteBuffer fcModel(byte[] weights, long weightZeroPoint, int builtin) {
+        Spec spec = new Spec(weights, weightZeroPoint);
+        spec.builtin = builtin;
+        return fcModel(spec);
+    }
+
+    private static ByteBuffer fcModel(Spec spec) {
+        Fb fb = new Fb();
+        int model = fb.table(5);
+        int opcodes = fb.refVector(1);
+        int subgraphs = fb.refVector(1);
+        int buffers = fb.refVector(2);
+        fb.setRef(model, 1, opcodes);
+        fb.setRef(model, 2, subgraphs);
+        fb.setRef(model, 4, buffers);
+
+        int opcode = fb.table(4);
+        fb.setElem(opcodes, 0, opcode);
+        fb.setInt(opcode, 0, Math.min(spec.builtin, 127));
+        fb.setInt(opcode, 3, spec.builtin);
+
+        int emptyBuffer = fb.table(1);
+        fb.setElem(buffers, 0, emptyBuffer);
+        fb.setRef(emptyBuffer, 0, fb.byteVector(new byte[0]));
+        int weightBuffer = fb.table(1);
+        fb.setElem(buffers, 1, weightBuffer);
+        fb.setRef(weightBuffer, 0, fb.byteVector(spec.weights));
+
+        int subgraph = fb.table(4);
+        fb.setElem(subgraphs, 0, subgraph);
+        int tensors = fb.refVector(3);
+        fb.setRef(subgraph, 0, tensors);
+        fb.setRef(subgraph, 1, fb.intVector(0));
+        fb.setRef(subgraph, 2, fb.intVector(2));
+        int ops = fb.refVector(1);
+        fb.setRef(subgraph, 3, ops);
+
+        int[][] shapes = {{1, F}, {UNITS, F}, {1, UNITS}};
+        for (int t = 0; t < 3; t++) {
+            int tensor = fb.table(7);
+            fb.setElem(tensors, t, tensor);
+            fb.setRef(tensor, 0, fb.intVector(shapes[t]));
+            fb.setInt(tensor, 1, 9); // INT8
+            fb.setInt(tensor, 2, t == 1 ? 1 : 0);
+            int quant = fb.table(7);
+            fb.setRef(tensor, 4, quant);
+            fb.setRef(quant, 3, t == 1 ? fb.longVector(spec.weightZeroPoints) : fb.longVector(0));
+            if (t == 1) fb.setInt(quant, 6, spec.quantizedDimension); // 4/5 are the details union
+            if (t == 1 && spec.sparse) fb.setRef(tensor, 6, fb.table(1));
+            else fb.absent(tensor, 6);
+        }
+
+        int op = fb.table(5);
+        fb.setElem(ops, 0, op);
+        fb.setInt(op, 0, spec.opcodeIndex);
+        fb.setRef(op, 1, fb.intVector(0, 1, -1));
+        fb.setRef(op, 2, fb.intVector(2));
+        if (spec.weightsFormat >= 0) {
+            fb.setInt(op, 3, 8); // FullyConnectedOptions
+            int options = fb.table(2);
+            fb.setRef(op, 4, options);
+            fb.setInt(options, 1, spec.weightsFormat);
+        } else {
+            fb.absent(op, 3);
+            fb.absent(op, 4);
+        }
+        return fb.finish(model);
+    }
+
+    private static byte[] weights(Random rnd, boolean[] zeroColumns, byte zp) {
+        byte[] w = new byte[UNITS * F];
+        for (int u = 0; u < UNITS; u++) {
+            for (int j = 0; j < F; j++) {
+                byte v;
+                do { v = (byte) (rnd.nextInt(255) - 127); } while (v == zp);
+                w[u * F + j] = zeroColumns[j] ? zp : v;
+            }
+        }
+        return w;
+    }
+
+    private static float[][] window(Random rnd, int n) {
+        float[][] w = new float[n][3];
+        for (float[] s : w) {
+            s[0] = (float) rnd.nextGaussian();
+            s[1] = (float) rnd.nextGaussian() * 2f;
+            s[2] = 9.81f + (float) rnd.nextGaussian();
+        }
+        return w;
+    }
+
+    /** Skew/kurtosis (axis and |g|) and correlations unused: the expensive loops. */
+    private static boolean[] prunedColumns() {
+        boolean[] zero = new boolean[F];
+        for (int j = 15; j <= 20; j++) zero[j] = true;
+        zero[26] = zero[27] = true;
+        for (int j = 28; j <= 30; j++) zero[j] = true;
+        return zero;
+    }
+
+    @Test
+    public void skipsExactlyTheAllZeroColumns() {
+        boolean[] zero = prunedColumns();
+        FeaturePlan plan = FeaturePlan.analyze(fcModel(weights(new Random(1), zero, (byte) 0), 0, 9), F);
+
+        for (int j = 0; j < F; j++) assertEquals("feature " + j, !zero[j], plan.isNeeded(j));
+        assertFalse(plan.axisMoments);
+        assertFalse(plan.correlation);
+        assertFalse(plan.magMoments);
+        assertTrue(plan.magSecond);
+    }
+
+    @Test
+    public void honoursWeightZeroPoint() {
+        boolean[] zero = new boolean[F];
+        zero[5] = true;
+        byte zp = 3;
+        FeaturePlan plan = FeaturePlan.analyze(fcModel(weights(new Random(2), zero, zp), zp, 9), F);
+        assertEquals(F - 1, plan.neededCount());
+        assertFalse(plan.isNeeded(5));
+    }
+
+    @Test
+    public void nonFcFirstLayerComputesEverything() {
+        FeaturePlan plan = FeaturePlan.analyze(fcModel(weights(new Random(3), prunedColumns(), (byte) 0), 0, 3), F);
+        assertSame(FeaturePlan.ALL, plan);
+    }
+
+    @Test
+    public void plannedFeaturesAreBitIdentical() {
+        Random rnd = new Random(4);
+        for (int trial = 0; trial < 200; trial++) {
+            boolean[] needed = new boolean[F];
+            for (int j = 0; j < F; j++) needed[j] = rnd.nextInt(3) != 0;
+            FeaturePlan plan = new FeaturePlan(needed);
+            float[][] w = window(rnd, 8 + rnd.nextInt(120));
+
+            float[] full = MotionFeatures.compute(w);
+            float[] part = MotionFeatures.compute(w, plan);
+            for (int j = 0; j < F; j++) {
+                float expected = needed[j] ? full[j] : 0f;
+                assertEquals("feature " + j, Float.floatToIntBits(expected), Float.floatToIntBits(part[j]));
+            }
+        }
+    }
+
+    @Test
+    public void quantizedFcOutputIsUnchanged() {
+        Random rnd = new Random(5);
+        byte[] wq = weights(rnd, prunedColumns(), (byte) 0);
+        FeaturePlan plan = FeaturePlan.analyze(fcModel(wq, 0, 9), F);
+        float inScale = 0.05f;
+        int inZp = -10;
+        for (int trial = 0; trial < 100; trial++) {
+            float[][] w = window(rnd, 30);
+            assertArrayEquals(fc(MotionFeatures.compute(w), wq, inScale, inZp),
+                    fc(MotionFeatures.compute(w, plan), wq, inScale, inZp));
+        }
+    }
+
+    /** INT8 FC accumulators as TFLite computes them (input quantized like TFLiteClassifier). */
+    private static long[] fc(float[] features, byte[] wq, float inScale, int inZp) {
+        long[] acc = new long[UNITS];
+        for (int j = 0; j < F; j++) {
+            int q = Math.max(-128, Math.min(127, Math.round(features[j] / inScale + inZp)));
+            for (int u = 0; u < UNITS; u++) acc[u] += (long) (q - inZp) * wq[u * F + j];
+        }
+        return acc;
+    }
+
+    @Test
+    public void unexpectedLayoutsComputeEverything() {
+        byte[] w = weights(new Random(7), prunedColumns(), (byte) 0);
+        assertNotSame(FeaturePlan.ALL, FeaturePlan.analyze(fcModel(new Spec(w, 0)), F));
+
+        Spec defaultOptions = new Spec(w, 0);
+        defaultOptions.weightsFormat = 0;
+        assertNotSame(FeaturePlan.ALL, FeaturePlan.analyze(fcModel(defaultOptions), F));
+
+        Spec shuffled = new Spec(w, 0);
+        shuffled.weightsFormat = 1; // SHUFFLED4x16INT8
+        assertSame(FeaturePlan.ALL, FeaturePlan.analyze(fcModel(shuffled), F));
+
+        Spec sparse = new Spec(w, 0);
+        sparse.sparse = true;
+        assertSame(FeaturePlan.ALL, FeaturePlan.analyze(fcModel(sparse), F));
+
+        Spec badOpcode = new Spec(w, 0);
+        badOpcode.opcodeIndex = 1; // past the opcode table
+        assertSame(FeaturePlan.ALL, FeaturePlan.analyze(fcModel(badOpcode), F));
+
+        Spec oddZeroPoints = new Spec(w, 0);
+        oddZeroPoints.weightZeroPoints = new long[UNITS + 1];
+        assertSame(FeaturePlan.ALL, FeaturePlan.analyze(fcModel(oddZeroPoints), F));
+
+        Spec noZeroPoint = new Spec(w, 0);
+        noZeroPoint.weightZeroPoints = new long[0];
+        assertSame(FeaturePlan.ALL, FeaturePlan.analyze(fcModel(noZeroPoint), F));
+
+        Spec perInput = new Spec(w, 0);
+        perInput.weightZeroPoints = new long[UNITS];
+        perInput.quantizedDimension = 1;
+        assertSame(FeaturePlan.ALL, FeaturePlan.analyze(fcModel(perInput), F));
+    }
+
+    @Test
+    public void truncatedModelsComputeEverything() throws IOException {
+        for (ByteBuffer model : new ByteBuffer[]{
+                fcModel(weights(new Random(8), prunedColumns(), (byte) 0), 0, 9), bundledModel()}) {
+            FeaturePlan whole = FeaturePlan.analyze(model, F);
+            for (int len = 0; len < model.limit(); len += 1 + len / 64) {
+                ByteBuffer cut = model.duplicate();
+                cut.limit(len);
+                FeaturePlan plan = FeaturePlan.analyze(cut.slice(), F);
+                // Either everything, or the cut left all of it readable and nothing changed
+                assertTrue("length " + len, plan == FeaturePlan.ALL || plan.toString().equals(whole.toString()));
+            }
+        }
+    }
+
+    @Test
+    public void garbledModelsNeverThrow() throws IOException {
+        Random rnd = new Random(9);
+        for (ByteBuffer model : new ByteBuffer[]{
+                fcModel(weights(new Random(10), prunedColumns(), (byte) 0), 0, 9), bundledModel()}) {
+            byte[] bytes = new byte[model.limit()];
+            model.duplicate().get(bytes);
+            for (int trial = 0; trial < 2_000; trial++) {
+                byte[] g = bytes.clone();
+                for (int k = 1 + rnd.nextInt(4); k > 0; k--) g[rnd.nextInt(g.length)] = (byte) rnd.nextInt(256);
+                assertNotNull(FeaturePlan.analyze(ByteBuffer.wrap(g), F));
+            }
+        }
+    }
+
+    /** The bundled model as shipped; Gradle runs unit tests from the module directory. */
+    private static ByteBuffer bundledModel() throws IOException {
+        File f = new File("src/main/assets/tflite_learn_4.tflite");
+        assertTrue("bundled model not found from " + new File("").getAbsolutePath(), f.exists());
+        return ByteBuffer.wrap(Files.readAllBytes(f.toPath()));
+    }
+
+    @Test
+    public void bundledModelPlanIsPinned() throws IOException {
+        FeaturePlan plan = FeaturePlan.analyze(bundledModel(), F);
+        System.out.println("[plan] bundled model: " + plan);
+        assertNotSame(FeaturePlan.ALL, plan); // the FC layer was found and read
+        // This model uses every feature; a retrained one that doesn't should update this line
+        assertEquals("FeaturePlan 39/39 skip=[]", plan.toString());
+    }
+
+    @Test
+    public void measuresPerWindowSaving() {
+        assumeTrue(Boolean.getBoolean("stress")); // timing only; ./gradlew test -Dstress=true
+        FeaturePlan plan = new FeaturePlan(invert(prunedColumns()));
+        Random rnd = new Random(6);
+        float[][][] windows = new float[64][][];
+        for (int i = 0; i < windows.length; i++) windows[i] = window(rnd, 128);
+
+        float sink = 0;
+        for (int warm = 0; warm < 20_000; warm++) {
+            sink += MotionFeatures.compute(windows[warm & 63])[0];
+            sink += MotionFeatures.compute(windows[warm & 63], plan)[0];
+        }
+        int iters = 20_000;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iters; i++) sink += MotionFeatures.compute(windows[i & 63])[3];
+        long full = System.nanoTime() - t0;
+        t0 = System.nanoTime();
+        for (int i = 0; i < iters; i++) sink += MotionFeatures.compute(windows[i & 63], plan)[3];
+        long planned = System.nanoTime() - t0;
+
+        System.out.printf("[plan] 128-sample window: full=%.0fns planned=%.0fns (%s) sink=%s%n",
+                (double) full / iters, (double) planned / iters, plan, sink != 0);
+        assertTrue(planned > 0 && full > 0);
+    }
+
+    private static boolean[] invert(boolean[] b) {
+        boolean[] r = new boolean[b.length];
+        for (int i = 0; i < b.length; i++) r[i] = !b[i];
+        return r;
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.study111;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class FixedPointFeaturesTest {
+
+    private static final int F = MotionFeatures.NUM_FEATURES;
+
+    // Input quantization of the bundled model, read the way FeaturePlan reads the file
+    private static final float[] IN_QUANT = bundledInputQuantization();
+    private static final float IN_SCALE = IN_QUANT[0];
+    private static final int IN_ZP = (int) IN_QUANT[1];
+
+    private static final float LSB = 0.0048f; // typical +-16 g accelerometer resolution
+
+    /** Phone-like windows: resting noise, hand-held jitter, or a lift with a sharp swing. */
+    private static float[][] window(Random rnd, int n) {
+        int kind = rnd.nextInt(3);
+        float noise = kind == 0 ? 0.03f : 0.3f + rnd.nextFloat();
+        float[] tilt = {(float) rnd.nextGaussian() * 3f, (float) rnd.nextGaussian() * 3f};
+        float[][] w = new float[n][3];
+        for (int i = 0; i < n; i++) {
+            double lift = kind == 2 ? 12.0 * Math.exp(-Math.pow((i - n / 2.0) / (n / 8.0), 2)) : 0;
+            w[i][0] = sensor(tilt[0] + rnd.nextGaussian() * noise + lift * 0.3);
+            w[i][1] = sensor(tilt[1] + rnd.nextGaussian() * noise - lift * 0.5);
+            w[i][2] = sensor(9.81 + rnd.nextGaussian() * noise + lift);
+        }
+        return w;
+    }
+
+    private static float sensor(double v) {
+        return sensor(v, LSB);
+    }
+
+    private static float sensor(double v, float lsb) {
+        return lsb == 0f ? (float) v : Math.round(v / lsb) * lsb;
+    }
+
+    /** A phone lying still: sensor noise of a few LSB around a random tilt. */
+    private static float[][] resting(Random rnd, int n, float noise, float lsb) {
+        float[] tilt = {(float) rnd.nextGaussian() * 3f, (float) rnd.nextGaussian() * 3f};
+        float[][] w = new float[n][3];
+        for (int i = 0; i < n; i++) {
+            w[i][0] = sensor(tilt[0] + rnd.nextGaussian() * noise, lsb);
+            w[i][1] = sensor(tilt[1] + rnd.nextGaussian() * noise, lsb);
+            w[i][2] = sensor(9.81 + rnd.nextGaussian() * noise, lsb);
+        }
+        return w;
+    }
+
+    /** Gradle runs unit tests from the module directory. */
+    private static float[] bundledInputQuantization() {
+        try {
+            File f = new File("src/main/assets/tflite_learn_4.tflite");
+            float[] q = FeaturePlan.inputQuantization(ByteBuffer.wrap(Files.readAllBytes(f.toPath())));
+            if (q == null) throw new IllegalStateException("bundled model input is not quantized per tensor");
+            return q;
+        } catch (IOException e) {
+            throw new IllegalStateException("bundled model not found from " + new File("").getAbsolutePath(), e);
+        }
+    }
+
+    private static int quantize(float v) {
+        return Math.max(-128, Math.min(127, Math.round(v / IN_SCALE + IN_ZP)));
+    }
+
+    @Test
+    public void readsBundledInputQuantization() {
+        assertEquals(0.2923036f, IN_SCALE, 1e-7f);
+        assertEquals(-70, IN_ZP);
+    }
+
+    @Test
+    public void residualsCarryTheSubQ9Bits() {
+        Random rnd = new Random(5);
+        for (int k = 0; k < 100_000; k++) {
+            float v = (float) Math.max(-63, Math.min(63, rnd.nextGaussian() * 20));
+            short q = FixedPointFeatures.toFixed(v);
+            int fine = (q << FixedPointFeatures.RESIDUAL_BITS) + FixedPointFeatures.residual(v, q);
+            assertEquals("v=" + v, v * (1 << 17), fine, 1.0);
+        }
+        short sat = FixedPointFeatures.toFixed(100f);
+        assertEquals(Byte.MAX_VALUE, FixedPointFeatures.residual(100f, sat));
+    }
+
+    @Test
+    public void integerSqrtIsRounded() {
+        Random rnd = new Random(1);
+        for (long v = 0; v < 5000; v++) {
+            assertEquals("sqrt " + v, Math.round(Math.sqrt(v)), FixedPointFeatures.sqrt(v), 1);
+        }
+        for (int k = 0; k < 100_000; k++) {
+            long v = (rnd.nextLong() >>> 1) >> (24 + rnd.nextInt(40)); // below 2^40
+            double exact = Math.sqrt(v);
+            assertEquals("sqrt " + v, exact, FixedPointFeatures.sqrt(v), 0.5 + exact * 1e-5);
+        }
+    }
+
+    @Test
+    public void matchesFloatExtractorWithinOneInputStep() {
+        Random rnd = new Random(2);
+        FixedPointFeatures fixed = new FixedPointFeatures(128);
+        float[] worst = new float[F];
+        for (int trial = 0; trial < 2000; trial++) {
+            float[][] w = window(rnd, 16 + rnd.nextInt(113));
+            float[] ref = MotionFeatures.compute(w);
+            float[] got = fixed.compute(w);
+            for (int j = 0; j < F; j++) {
+                int qa = quantize(ref[j]), qb = quantize(got[j]);
+                assertTrue("feature " + j + ": " + ref[j] + " vs " + got[j], Math.abs(qa - qb) <= 1);
+                // Saturated inputs (e.g. energies) only need to land on the same clipped code
+                if (qa == qb && (qa == 127 || qa == -128)) continue;
+                float d = Math.abs(ref[j] - got[j]);
+                assertTrue("feature " + j + ": " + ref[j] + " vs " + got[j], d < IN_SCALE);
+                worst[j] = Math.max(worst[j], d / IN_SCALE);
+            }
+        }
+        float max = 0;
+        for (float v : worst) max = Math.max(max, v);
+        System.out.printf("[fixed] worst |fixed - float| = %.4f input steps%n", max);
+    }
+
+    @Test
+    public void restingWindowsMatchWithinOneInputStep() {
+        // Noise of one or two Q9 steps: Q9 rounding alone would reshape skew and kurtosis,
+        // the residuals compute(float[][]) passes along bring them back
+        Random rnd = new Random(4);
+        FixedPointFeatures fixed = new FixedPointFeatures(128);
+        int[] shape = {15, 16, 17, 18, 19, 20, 26, 27};
+        int[] stdOf = {3, 4, 5, 3, 4, 5, 22, 22};
+        for (float lsb : new float[]{0.0048f, 0.0096f, 0f}) {
+            for (float noise : new float[]{0.002f, 0.003f, 0.005f, 0.01f}) {
+                for (int trial = 0; trial < 500; trial++) {
+                    float[][] w = resting(rnd, 16 + rnd.nextInt(113), noise, lsb);
+                    float[] ref = MotionFeatures.compute(w);
+                    float[] got = fixed.compute(w);
+                    for (int j = 0; j < F; j++) {
+                        int s = Arrays.binarySearch(shape, j);
+                        // All samples equal: the float extractor's own rounding makes up skew/kurtosis
+                        if (s >= 0 && ref[stdOf[s]] < 1e-6f) continue;
+                        String msg = "lsb=" + lsb + " noise=" + noise + " feature " + j + ": " + ref[j] + " vs " + got[j];
+                        assertEquals(msg, quantize(ref[j]), quantize(got[j]), 1);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void survivesFullScaleSwings() {
+        float[][] w = new float[128][3];
+        for (int i = 0; i < w.length; i++) {
+            float v = (i & 1) == 0 ? 60f : -60f;
+            w[i][0] = v;
+            w[i][1] = -v;
+            w[i][2] = v * 0.5f;
+        }
+        float[] ref = MotionFeatures.compute(w);
+        float[] got = new FixedPointFeatures().compute(w);
+        for (int j = 0; j < F; j++) {
+            assertEquals("feature " + j, quantize(ref[j]), quantize(got[j]), 1);
+        }
+        assertEquals(-1f, got[28], 1e-3f); // X and Y are mirrored
+    }
+
+    @Test
+    public void measuresPerWindowCost() {
+        assumeTrue(Boolean.getBoolean("stress")); // timing only; ./gradlew test -Dstress=true
+        Random rnd = new Random(3);
+        float[][][] windows = new float[64][][];
+        short[][][] fixedWindows = new short[64][3][128];
+        byte[][][] residuals = new byte[64][3][128];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = window(rnd, 128);
+            for (int k = 0; k < 128; k++) {
+                for (int a = 0; a < 3; a++) {
+                    fixedWindows[i][a][k] = FixedPointFeatures.toFixed(windows[i][k][a]);
+                    residuals[i][a][k] = FixedPointFeatures.residual(windows[i][k][a], fixedWindows[i][a][k]);
+                }
+            }
+        }
+        FixedPointFeatures fixed = new FixedPointFeatures(128);
+
+        float sink = 0;
+        for (int warm = 0; warm < 20_000; warm++) {
+            short[][] s = fixedWindows[warm & 63];
+            byte[][] r = residuals[warm & 63];
+            sink += MotionFeatures.compute(windows[warm & 63])[0];
+            sink += fixed.compute(windows[warm & 63])[0];
+            sink += fixed.compute(s[0], s[1], s[2], r[0], r[1], r[2], 128)[0];
+        }
+        // Interleaved rounds, best of each: a shared CI core is noisy
+        int iters = 5_000;
+        long floating = Long.MAX_VALUE, converted = Long.MAX_VALUE, integer = Long.MAX_VALUE;
+        for (int round = 0; round < 8; round++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < iters; i++) sink += MotionFeatures.compute(windows[i & 63])[3];
+            floating = Math.min(floating, System.nanoTime() - t0);
+            t0 = System.nanoTime();
+            for (int i = 0; i < iters; i++) sink += fixed.compute(windows[i & 63])[3];
+            converted = Math.min(converted, System.nanoTime() - t0);
+            t0 = System.nanoTime();
+            for (int i = 0; i < iters; i++) {
+                short[][] s = fixedWindows[i & 63];
+                byte[][] r = residuals[i & 63];
+                sink += fixed.compute(s[0], s[1], s[2], r[0], r[1], r[2], 128)[3];
+            }
+            integer = Math.min(integer, System.nanoTime() - t0);
+        }
+
+        System.out.printf("[fixed] 128-sample window: float=%.0fns fixed(from float)=%.0fns fixed(int16+residual)=%.0fns sink=%s%n",
+                (double) floating / iters, (double) converted / iters, (double) integer / iters, sink != 0);
+        assertTrue(floating > 0 && integer > 0);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.study111;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class HistoryExportTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    private static File tempDir() throws IOException {
+        File d = Files.createTempDirectory("history").toFile();
+        d.deleteOnExit();
+        return d;
+    }
+
+    private static float sx(int i) { return (float) Math.sin(i * 0.01) * 2f; }
+    private static float sy(int i) { return (float) Math.cos(i * 0.01); }
+    private static float sz(int i) { return 9.81f + (i % 7) * 0.001f; }
+
+    @Test
+    public void export_roundTripsAllRows() throws IOException {
+        File dir = tempDir();
+        HistoryStore store = new HistoryStore(dir);
+        int events = 100, samples = 3 * HistoryExporter.ROWS_PER_GROUP + 17;
+        for (int i = 0; i < events; i++) {
+            store.appendEvent(T0 + i * 60_000L, (byte) (1 + i % 7), i * 10 - 50);
+        }
+        long[] times = new long[samples];
+        float[] xyz = new float[3 * samples];
+        for (int i = 0; i < samples; i++) {
+            times[i] = T0 + i * 20L;
+            xyz[3 * i] = sx(i); xyz[3 * i + 1] = sy(i); xyz[3 * i + 2] = sz(i);
+        }
+        store.appendMotion(times, xyz, samples);
+
+        File out = new File(dir, "export.sfch");
+        long[] lastProgress = {-1, -1};
+        long written = new HistoryExporter(store).export(out, (done, total) -> {
+            assertTrue(done >= lastProgress[0]);
+            lastProgress[0] = done;
+            lastProgress[1] = total;
+        });
+        store.close();
+
+        assertEquals(events + samples, written);
+        assertEquals(written, lastProgress[0]);
+        assertEquals(written, lastProgress[1]);
+        assertTrue("compressed", out.length() < samples * (long) HistoryStore.MOTION_ROW_BYTES / 2);
+
+        try (HistoryExportReader r = new HistoryExportReader(out)) {
+            assertEquals(events, r.getEventCount());
+            assertEquals(samples, r.getMotionCount());
+
+            int[] n = {0};
+            r.readEvents(Long.MIN_VALUE, Long.MAX_VALUE, (t, type, value) -> {
+                int i = n[0]++;
+                assertEquals(T0 + i * 60_000L, t);
+                assertEquals(1 + i % 7, type);
+                assertEquals(i * 10 - 50, value);
+            });
+            assertEquals(events, n[0]);
+
+            n[0] = 0;
+            r.readMotion(Long.MIN_VALUE, Long.MAX_VALUE, (t, x, y, z) -> {
+                int i = n[0]++;
+                assertEquals(T0 + i * 20L, t);
+                assertEquals(Float.floatToIntBits(sx(i)), Float.floatToIntBits(x));
+                assertEquals(Float.floatToIntBits(sy(i)), Float.floatToIntBits(y));
+                assertEquals(Float.floatToIntBits(sz(i)), Float.floatToIntBits(z));
+            });
+            assertEquals(samples, n[0]);
+        }
+    }
+
+    @Test
+    public void rangeQuery_seeksOnlyOverlappingGroups() throws IOException {
+        File dir = tempDir();
+        HistoryStore store = new HistoryStore(dir);
+        int samples = 10 * HistoryExporter.ROWS_PER_GROUP;
+        long[] times = new long[samples];
+        float[] xyz = new float[3 * samples];
+        for (int i = 0; i < samples; i++) { times[i] = T0 + i * 10L; xyz[3 * i] = i; }
+        store.appendMotion(times, xyz, samples);
+
+        File out = new File(dir, "export.sfch");
+        new HistoryExporter(store).export(out, null);
+        store.close();
+
+        try (HistoryExportReader r = new HistoryExportReader(out)) {
+            assertEquals(10, r.getGroupCount());
+            long from = T0 + 5L * HistoryExporter.ROWS_PER_GROUP * 10 + 100;
+            long to = from + 500;
+            int[] n = {0};
+            r.readMotion(from, to, (t, x, y, z) -> {
+                assertTrue(t >= from && t <= to);
+                assertEquals((t - T0) / 10f, x, 0f);
+                n[0]++;
+            });
+            assertEquals(51, n[0]);
+            assertEquals(1, r.getGroupsRead());
+        }
+    }
+
+    @Test
+    public void emptyStore_exportsEmptyFile() throws IOException {
+        File dir = tempDir();
+        HistoryStore store = new HistoryStore(dir);
+        File out = new File(dir, "export.sfch");
+
+        assertEquals(0, new HistoryExporter(store).export(out, null));
+        try (HistoryExportReader r = new HistoryExportReader(out)) {
+            assertEquals(0, r.getGroupCount());
+        }
+    }
+
+    @Test
+    public void failedExport_leavesPreviousFileUntouched() throws IOException {
+        File dir = tempDir();
+        HistoryStore store = new HistoryStore(dir);
+        store.appendMotion(new long[]{T0, T0 + 20}, new float[]{1, 2, 3, 4, 5, 6}, 2);
+        File out = new File(dir, "export.sfch");
+        new HistoryExporter(store).export(out, null);
+        long length = out.length();
+
+        store.appendMotion(new long[]{T0 + 40}, new float[]{7, 8, 9}, 1);
+        try {
+            new HistoryExporter(store).export(out, (done, total) -> { throw new IllegalStateException("disk full"); });
+            fail("export should have failed");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(length, out.length());
+        assertFalse(new File(dir, "export.sfch.tmp").exists());
+        try (HistoryExportReader r = new HistoryExportReader(out)) {
+            int[] n = {0};
+            r.readMotion(Long.MIN_VALUE, Long.MAX_VALUE, (t, x, y, z) -> n[0]++);
+            assertEquals(2, n[0]);
+        }
+        store.close();
+    }
+
+    @Test
+    public void tornTail_isDroppedBeforeNextAppend() throws IOException {
+        File dir = tempDir();
+        HistoryStore store = new HistoryStore(dir);
+        store.appendMotion(new long[]{T0, T0 + 20}, new float[]{1, 2, 3, 4, 5, 6}, 2);
+        store.appendEvent(T0, HistoryStore.EVENT_FOCUS_START, 1500);
+        store.close();
+        // Process killed mid-flush: a partial row on each file
+        try (FileOutputStream f = new FileOutputStream(new File(dir, "motion.bin"), true)) {
+            f.write(new byte[7]);
+        }
+        try (FileOutputStream f = new FileOutputStream(new File(dir, "events.bin"), true)) {
+            f.write(new byte[5]);
+        }
+
+        store = new HistoryStore(dir);
+        store.appendMotion(new long[]{T0 + 40}, new float[]{7, 8, 9}, 1);
+        store.appendEvent(T0 + 60_000, HistoryStore.EVENT_PAUSE_MOVEMENT, 1440);
+        store.flush();
+
+        assertEquals(3 * HistoryStore.MOTION_ROW_BYTES, new File(dir, "motion.bin").length());
+        assertEquals(3, store.motionCount());
+        try (HistoryStore.MotionCursor c = store.openMotion(store.motionCount())) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(c.next());
+                assertEquals(T0 + 20L * i, c.timeMs);
+                assertEquals(3 * i + 1, c.x, 0f);
+                assertEquals(3 * i + 3, c.z, 0f);
+            }
+            assertFalse(c.next());
+        }
+        assertEquals(2, store.eventCount());
+        try (HistoryStore.EventCursor c = store.openEvents(store.eventCount())) {
+            assertTrue(c.next());
+            assertTrue(c.next());
+            assertEquals(T0 + 60_000, c.timeMs);
+            assertEquals(HistoryStore.EVENT_PAUSE_MOVEMENT, c.type);
+            assertEquals(1440, c.value);
+        }
+        store.close();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.study111;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class InferenceCacheTest {
+
+    private static final int KEY = 39;
+
+    private static ByteBuffer key(int seed) {
+        ByteBuffer b = ByteBuffer.allocateDirect(KEY);
+        for (int i = 0; i < KEY; i++) b.put(i, (byte) (seed * 31 + i * (seed % 5)));
+        return b;
+    }
+
+    @Test
+    public void hitReturnsStoredScores() {
+        InferenceCache c = new InferenceCache(4, KEY, 2);
+        float[] out = new float[2];
+
+        assertFalse(c.get(key(1), out));
+        c.put(key(1), new float[]{0.25f, 0.75f});
+        assertTrue(c.get(key(1), out));
+
+        assertArrayEquals(new float[]{0.25f, 0.75f}, out, 0f);
+        assertEquals(1, c.getHits());
+        assertEquals(1, c.getMisses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        InferenceCache c = new InferenceCache(2, KEY, 2);
+        float[] out = new float[2];
+        c.put(key(1), new float[]{1, 0});
+        c.put(key(2), new float[]{2, 0});
+        assertTrue(c.get(key(1), out)); // 1 becomes most recent
+        c.put(key(3), new float[]{3, 0}); // evicts 2
+
+        assertEquals(1, c.getEvictions());
+        assertTrue(c.get(key(1), out));
+        assertFalse(c.get(key(2), out));
+        assertTrue(c.get(key(3), out));
+        assertEquals(3f, out[0], 0f);
+    }
+
+    @Test
+    public void clearInvalidatesEverything() {
+        InferenceCache c = new InferenceCache(8, KEY, 2);
+        for (int i = 0; i < 8; i++) c.put(key(i), new float[]{i, i});
+        c.clear();
+
+        float[] out = new float[2];
+        for (int i = 0; i < 8; i++) assertFalse(c.get(key(i), out));
+        assertEquals(0, c.size());
+    }
+
+    @Test
+    public void matchesReferenceLruUnderChurn() {
+        final int cap = 16;
+        InferenceCache c = new InferenceCache(cap, KEY, 2);
+        Map<Integer, float[]> ref = new LinkedHashMap<Integer, float[]>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Integer, float[]> e) { return size() > cap; }
+        };
+        Random rnd = new Random(7);
+        float[] out = new float[2];
+        for (int step = 0; step < 20_000; step++) {
+            int k = rnd.nextInt(40);
+            float[] expected = ref.get(k);
+            boolean hit = c.get(key(k), out);
+            assertEquals("step " + step, expected != null, hit);
+            if (hit) {
+                assertTrue(Arrays.equals(expected, out));
+            } else {
+                float[] v = {k, step};
+                c.put(key(k), v);
+                ref.put(k, v);
+            }
+        }
+        assertEquals(cap, c.size());
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.study111;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class MotionPipelineTest {
+
+    private static final class Recorder implements MotionPipeline.Listener {
+        int movements, results, periodChanges;
+        @Override public void onMovementDetected() { movements++; }
+        @Override public void onResult(TFLiteClassifier.Result result) { results++; }
+        @Override public void onSamplingPeriodChanged(int periodUs) { periodChanges++; }
+    }
+
+    private static TFLiteClassifier.Result result(String label) {
+        return new TFLiteClassifier.Result(label, 1f, new float[]{0f, 1f});
+    }
+
+    @Test
+    public void withoutClassifier_thresholdPausesImmediately() {
+        Recorder rec = new Recorder();
+        MotionPipeline p = new MotionPipeline(null, new DetectionGovernor(), () -> 0L, rec);
+        p.reset();
+
+        p.onSample(0f, 0f, 9.8f, 0);
+        p.onSample(0.1f, 0f, 9.8f, 66_000_000L);
+        assertEquals(0, rec.movements);
+
+        p.onSample(3f, 0f, 9.8f, 132_000_000L);
+        assertEquals(1, rec.movements);
+    }
+
+    @Test
+    public void withClassifier_thresholdStillPausesImmediately() {
+        Recorder rec = new Recorder();
+        MotionPipeline p = new MotionPipeline(w -> result("stationary"), new DetectionGovernor(), () -> 0L, rec);
+        p.reset();
+
+        long t = 0;
+        for (int i = 0; i < 50; i++, t += 66_000_000L) p.onSample(0f, 0f, 9.8f, t);
+        assertTrue(rec.results > 0);
+        assertEquals(0, rec.movements);
+
+        p.onSample(5f, 0f, 9.8f, t); // model says stationary; the threshold decides
+        assertEquals(1, rec.movements);
+    }
+
+    @Test
+    public void modelConfirmation_pauseNeedsThresholdAndPickUp() {
+        Recorder rec = new Recorder();
+        String[] label = {"pick_up"};
+        MotionPipeline p = new MotionPipeline(w -> result(label[0]), new DetectionGovernor(), () -> 0L, rec);
+        p.setRequireModelConfirmation(true);
+        p.reset();
+
+        long t = 0;
+        // Stationary phone: classifier says pick_up, but no threshold trip -> no pause
+        for (int i = 0; i < 100; i++, t += 66_000_000L) p.onSample(0f, 0f, 9.8f, t);
+        assertTrue(rec.results > 0);
+        assertEquals(0, rec.movements);
+
+        // Threshold trips but model says stationary -> still no pause
+        label[0] = "stationary";
+        p.onSample(5f, 0f, 9.8f, t);
+        for (int i = 0; i < 20; i++) { t += 66_000_000L; p.onSample(5f, 0f, 9.8f, t); }
+        assertEquals(0, rec.movements);
+
+        // Both agree -> pause
+        label[0] = "pick_up";
+        p.onSample(0f, 0f, 9.8f, t);
+        for (int i = 0; i < 20 && rec.movements == 0; i++) { t += 66_000_000L; p.onSample(0f, 0f, 9.8f, t); }
+        assertEquals(1, rec.movements);
+    }
+
+    @Test
+    public void tripResult_isWindowEndingAtTrippingSample() {
+        Recorder rec = new Recorder();
+        // confidence carries the newest sample's x so the test can see which window was classified
+        MotionPipeline p = new MotionPipeline(
+                w -> new TFLiteClassifier.Result("stationary", w[w.length - 1][0], new float[]{1f, 0f}),
+                new DetectionGovernor(), () -> 0L, rec);
+        p.reset();
+
+        long t = 0;
+        p.onSample(0f, 0f, 9.8f, t);
+        p.onSample(5f, 0f, 9.8f, t += 200_000_000L); // trips before a full window
+        assertEquals(1, rec.movements);
+        assertNull(p.getTripResult());
+
+        p.reset();
+        for (int i = 0; i < 30; i++) p.onSample(0.01f * (i % 2), 0f, 9.8f, t += 200_000_000L);
+        p.onSample(5f, 0f, 9.8f, t += 200_000_000L);
+        assertEquals(2, rec.movements);
+        assertNotNull(p.getTripResult());
+        assertEquals(5f, p.getTripResult().confidence, 0f);
+
+        p.reset();
+        assertNull(p.getTripResult());
+    }
+
+    @Test
+    public void vetoTrips_stationaryTripWindowDoesNotPause() {
+        Recorder rec = new Recorder();
+        String[] label = {"stationary"};
+        int[] calls = {0};
+        MotionPipeline p = new MotionPipeline(w -> { calls[0]++; return result(label[0]); },
+                new DetectionGovernor(), () -> 0L, rec);
+        p.setVetoTrips(true);
+        p.reset();
+
+        long t = 0;
+        for (int i = 0; i < 30; i++) p.onSample(0f, 0f, 9.8f, t += 200_000_000L);
+        int before = calls[0];
+        for (int i = 0; i < 6; i++) p.onSample((i % 2) * 5f, 0f, 9.8f, t += 200_000_000L); // knocks
+        assertEquals(0, rec.movements);
+        assertTrue("one inference per sample at most", calls[0] - before <= 6);
+
+        // A vetoed trip still pauses once a following window says pick_up
+        label[0] = "pick_up";
+        for (int i = 0; i < 10 && rec.movements == 0; i++) p.onSample(0f, 0f, 9.8f, t += 200_000_000L);
+        assertEquals(1, rec.movements);
+        assertEquals("pick_up", p.getTripResult().label);
+    }
+
+    @Test
+    public void vetoTrips_pickUpTripWindowPausesImmediately() {
+        Recorder rec = new Recorder();
+        MotionPipeline p = new MotionPipeline(w -> result("pick_up"), new DetectionGovernor(), () -> 0L, rec);
+        p.setVetoTrips(true);
+        p.reset();
+
+        long t = 0;
+        p.onSample(0f, 0f, 9.8f, t);
+        p.onSample(5f, 0f, 9.8f, t += 200_000_000L); // no full window yet: the threshold decides
+        assertEquals(1, rec.movements);
+
+        p.reset();
+        for (int i = 0; i < 30; i++) p.onSample(0f, 0f, 9.8f, t += 200_000_000L);
+        p.onSample(5f, 0f, 9.8f, t += 200_000_000L);
+        assertEquals(2, rec.movements);
+    }
+
+    @Test
+    public void trimMemory_keepsClassifyingWithFreshWindow() {
+        Recorder rec = new Recorder();
+        int[] windowLength = {0};
+        MotionPipeline p = new MotionPipeline(w -> { windowLength[0] = w.length; return result("stationary"); },
+                new DetectionGovernor(), () -> 0L, rec);
+        p.reset();
+
+        long t = 0;
+        for (int i = 0; i < 40; i++, t += 66_000_000L) p.onSample(0f, 0f, 9.8f, t);
+        int results = rec.results;
+        int length = windowLength[0];
+        assertTrue(results > 0);
+
+        p.trimMemory();
+        windowLength[0] = 0;
+        for (int i = 0; i < 40; i++, t += 66_000_000L) p.onSample(0f, 0f, 9.8f, t);
+        assertTrue(rec.results > results);
+        assertEquals(length, windowLength[0]);
+    }
+
+    @Test
+    public void fixedPoint_windowsAreQ9OldestFirstAcrossRingWrap() {
+        Recorder rec = new Recorder();
+        short[] lastX = new short[16];
+        int[] lastN = {0};
+        MotionPipeline p = MotionPipeline.fixedPoint((x, y, z, rx, ry, rz, n) -> {
+            System.arraycopy(x, 0, lastX, 0, n);
+            lastN[0] = n;
+            assertEquals(FixedPointFeatures.toFixed(9.8f), z[n - 1]);
+            assertEquals(FixedPointFeatures.residual(9.8f, z[n - 1]), rz[n - 1]);
+            return result("pick_up");
+        }, new DetectionGovernor(), () -> 0L, rec, 2.0f, 2_000, 16);
+        p.reset();
+
+        long t = 0;
+        for (int i = 0; i < 100; i++, t += 66_000_000L) p.onSample(i * 0.01f, 0f, 9.8f, t);
+        assertTrue(rec.results > 0);
+        assertEquals(16, lastN[0]); // capped at maxWindowSamples; the ring has wrapped
+        int newest = -1;
+        for (int k = 0; k < 100 && newest < 0; k++) {
+            if (lastX[15] == FixedPointFeatures.toFixed(k * 0.01f)) newest = k;
+        }
+        assertTrue(newest >= 15);
+        for (int k = 0; k < 16; k++) {
+            assertEquals(FixedPointFeatures.toFixed((newest - 15 + k) * 0.01f), lastX[k]);
+        }
+        assertEquals(0, rec.movements);
+
+        p.onSample(5f, 0f, 9.8f, t);
+        assertEquals(1, rec.movements);
+    }
+
+    @Test
+    public void windowIsSizedFromMeasuredRate() {
+        Recorder rec = new Recorder();
+        int[] windowLength = {0};
+        DetectionGovernor governor = new DetectionGovernor(); // requests 200 ms
+        MotionPipeline p = new MotionPipeline(w -> { windowLength[0] = w.length; return result("stationary"); },
+                governor, () -> 0L, rec);
+        p.reset();
+
+        long t = 0;
+        for (int i = 0; i < 60; i++, t += 250_000_000L) p.onSample(0f, 0f, 9.8f, t); // delivered at 250 ms
+        assertEquals(200_000, governor.getSamplingPeriodUs());
+        assertEquals(250_000, p.getEffectiveSamplingPeriodUs());
+        assertEquals(MotionPipeline.DEFAULT_WINDOW_MS / 250, windowLength[0]); // 2 s, not 10 samples
+    }
+
+    @Test
+    public void deliveryJitterDoesNotReallocateWindow() {
+        Recorder rec = new Recorder();
+        Set<float[][]> windows = Collections.newSetFromMap(new IdentityHashMap<>());
+        DetectionGovernor.Config cfg = new DetectionGovernor.Config();
+        cfg.minSamplingPeriodUs = cfg.initialSamplingPeriodUs = 20_000;
+        boolean[] settled = {false};
+        MotionPipeline p = new MotionPipeline(w -> { if (settled[0]) windows.add(w); return result("stationary"); },
+                new DetectionGovernor(cfg), () -> 0L, rec);
+        p.reset();
+
+        Random rnd = new Random(1);
+        long t = 0;
+        for (int i = 0; i < 3_000; i++) { // 20 ms +- 2 ms: the EWMA wanders around 100 samples
+            settled[0] = i >= 200; // past the EWMA's start-up
+            p.onSample(0f, 0f, 9.8f, t);
+            t += 18_000_000L + rnd.nextInt(4_000_000);
+        }
+        assertTrue(rec.results > 50);
+        assertEquals(1, windows.size());
+    }
+
+    @Test
+    public void liftTripsAtEveryGovernorPeriod() {
+        // Periods the default governor can choose: walk it from fastest to slowest
+        DetectionGovernor.Config cfg = new DetectionGovernor.Config();
+        Set<Integer> periods = new TreeSet<>();
+        for (int period = cfg.minSamplingPeriodUs; ; period = Math.min(cfg.maxSamplingPeriodUs, period * 3 / 2)) {
+            periods.add(period);
+            if (period == cfg.maxSamplingPeriodUs) break;
+        }
+        for (int period = cfg.maxSamplingPeriodUs; ; period = Math.max(cfg.minSamplingPeriodUs, period * 2 / 3)) {
+            periods.add(period);
+            if (period == cfg.minSamplingPeriodUs) break;
+        }
+
+        for (int periodUs : periods) {
+            for (int phaseMs = 0; phaseMs < periodUs / 1000; phaseMs += 10) {
+                Recorder rec = new Recorder();
+                MotionPipeline p = new MotionPipeline(null, new DetectionGovernor(), () -> 0L, rec);
+                p.reset();
+                for (long tNs = phaseMs * 1_000_000L; tNs < 3_000_000_000L; tNs += periodUs * 1000L) {
+                    float[] a = lift(tNs / 1e9);
+                    p.onSample(a[0], a[1], a[2], tNs);
+                }
+                assertTrue("period " + periodUs + "us phase " + phaseMs + "ms", rec.movements > 0);
+            }
+        }
+    }
+
+    /** Phone picked up off a desk at t = 1 s: tilts towards the user over 0.8 s while rising. */
+    private static float[] lift(double t) {
+        double u = Math.max(0, Math.min(1, (t - 1.0) / 0.8));
+        double tilt = u * u * (3 - 2 * u) * Math.toRadians(50);
+        double rise = (u > 0 && u < 1) ? 2.5 * Math.sin(Math.PI * u) : 0;
+        return new float[]{0f, (float) (9.81 * Math.sin(tilt)), (float) (9.81 * Math.cos(tilt) + rise)};
+    }
+}
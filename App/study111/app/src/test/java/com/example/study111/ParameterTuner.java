@@ -0,0 +1,446 @@
+package com.example.study111;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Offline tuner for the detection constants (move threshold, sampling period, window,
+ * hop, decision smoothing) over labelled accelerometer recordings.
+ *
+ * Candidates are evaluated in parallel. Everything that depends only on
+ * (sampling period, window, hop) -- decimation, per-hop movement deltas, features and
+ * the classifier's verdict -- is computed once per key and shared by every candidate
+ * that differs only in threshold/smoothing, so a grid mostly costs a few array scans.
+ *
+ * Replay follows {@link MotionPipeline}. By default (as in the app) the first sample
+ * whose delta exceeds the threshold pauses, even before the first full window. With
+ * {@link #requireModelConfirmation} (and a classifier) it replays confirmation mode
+ * instead: the hop counter, the movement flag that is cleared on each inference, and
+ * "moved AND pick_up". Smoothing then additionally requires that many consecutive
+ * pick_up windows; it has no effect on immediate trips. The per-user trip veto isn't
+ * replayed.
+ *
+ * Per candidate it reports event-level F1, mean time-to-pause and CPU per minute of
+ * sensor data spent on windows (features + classifier; ingestion is a few flops per
+ * sample and is not timed), and {@link #paretoFront} keeps the non-dominated ones.
+ */
+final class ParameterTuner {
+
+    /** Decides pick_up from one window's features (see MotionFeatures). */
+    interface FeatureClassifier {
+        boolean isPickUp(float[] features);
+    }
+
+    // -----------------------------------
+    // Recordings
+    // -----------------------------------
+
+    /** One recording at its native rate plus ground-truth pick-up intervals. */
+    static final class Trace {
+        final String name;
+        final long[] tsNs;
+        final float[] x, y, z;
+        final long[] eventStartNs, eventEndNs;
+
+        Trace(String name, long[] tsNs, float[] x, float[] y, float[] z,
+              long[] eventStartNs, long[] eventEndNs) {
+            this.name = name;
+            this.tsNs = tsNs;
+            this.x = x; this.y = y; this.z = z;
+            this.eventStartNs = eventStartNs;
+            this.eventEndNs = eventEndNs;
+        }
+
+        double minutes() {
+            return tsNs.length < 2 ? 0 : (tsNs[tsNs.length - 1] - tsNs[0]) / 60e9;
+        }
+
+        /**
+         * CSV with header, columns t_ms,x,y,z,label (label 1 while the phone is being
+         * picked up). Consecutive labelled rows form one event.
+         */
+        static Trace loadCsv(File f) throws IOException {
+            List<String> rows = new ArrayList<>();
+            try (BufferedReader r = new BufferedReader(new FileReader(f))) {
+                String line = r.readLine(); // header
+                while ((line = r.readLine()) != null) {
+                    if (!line.trim().isEmpty()) rows.add(line);
+                }
+            }
+            int n = rows.size();
+            long[] ts = new long[n];
+            float[] x = new float[n], y = new float[n], z = new float[n];
+            List<Long> starts = new ArrayList<>(), ends = new ArrayList<>();
+            boolean in = false;
+            for (int i = 0; i < n; i++) {
+                String[] c = rows.get(i).split(",");
+                ts[i] = (long) (Double.parseDouble(c[0].trim()) * 1_000_000L);
+                x[i] = Float.parseFloat(c[1].trim());
+                y[i] = Float.parseFloat(c[2].trim());
+                z[i] = Float.parseFloat(c[3].trim());
+                boolean label = Integer.parseInt(c[4].trim()) != 0;
+                if (label && !in) starts.add(ts[i]);
+                if (!label && in) ends.add(ts[i - 1]);
+                in = label;
+            }
+            if (in) ends.add(ts[n - 1]);
+            return new Trace(f.getName(), ts, x, y, z, toArray(starts), toArray(ends));
+        }
+
+        private static long[] toArray(List<Long> l) {
+            long[] a = new long[l.size()];
+            for (int i = 0; i < a.length; i++) a[i] = l.get(i);
+            return a;
+        }
+    }
+
+    // -----------------------------------
+    // Search space
+    // -----------------------------------
+
+    static final class Params {
+        final float moveThreshold;
+        final int samplingPeriodUs;
+        final int windowMs;
+        final int hopMs;
+        final int smoothing; // consecutive pick_up windows required
+
+        Params(float moveThreshold, int samplingPeriodUs, int windowMs, int hopMs, int smoothing) {
+            this.moveThreshold = moveThreshold;
+            this.samplingPeriodUs = samplingPeriodUs;
+            this.windowMs = windowMs;
+            this.hopMs = hopMs;
+            this.smoothing = smoothing;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Params)) return false;
+            Params q = (Params) o;
+            return Float.compare(moveThreshold, q.moveThreshold) == 0 && samplingPeriodUs == q.samplingPeriodUs
+                    && windowMs == q.windowMs && hopMs == q.hopMs && smoothing == q.smoothing;
+        }
+
+        @Override public int hashCode() {
+            return Objects.hash(moveThreshold, samplingPeriodUs, windowMs, hopMs, smoothing);
+        }
+
+        @Override public String toString() {
+            return String.format(Locale.US, "threshold=%.2f period=%dus window=%dms hop=%dms smoothing=%d",
+                    moveThreshold, samplingPeriodUs, windowMs, hopMs, smoothing);
+        }
+    }
+
+    static final class Space {
+        float[] moveThresholds = {MotionPipeline.DEFAULT_MOVE_THRESHOLD};
+        int[] samplingPeriodsUs = {new DetectionGovernor.Config().initialSamplingPeriodUs};
+        int[] windowsMs = {MotionPipeline.DEFAULT_WINDOW_MS};
+        int[] hopsMs = {new DetectionGovernor.Config().initialHopMs};
+        int[] smoothings = {1};
+
+        /** Full cartesian product. */
+        List<Params> grid() {
+            List<Params> out = new ArrayList<>();
+            for (int p : samplingPeriodsUs)
+                for (int w : windowsMs)
+                    for (int h : hopsMs)
+                        for (float t : moveThresholds)
+                            for (int s : smoothings)
+                                out.add(new Params(t, p, w, h, s));
+            return out;
+        }
+
+        /** {@code n} random draws from the grid values (duplicates possible). */
+        List<Params> random(int n, long seed) {
+            Random rnd = new Random(seed);
+            List<Params> out = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                out.add(new Params(
+                        moveThresholds[rnd.nextInt(moveThresholds.length)],
+                        samplingPeriodsUs[rnd.nextInt(samplingPeriodsUs.length)],
+                        windowsMs[rnd.nextInt(windowsMs.length)],
+                        hopsMs[rnd.nextInt(hopsMs.length)],
+                        smoothings[rnd.nextInt(smoothings.length)]));
+            }
+            return out;
+        }
+    }
+
+    static final class Result {
+        final Params params;
+        int truePositives, falsePositives, falseNegatives;
+        double f1;
+        double meanLatencyMs;      // pick-up start -> pause; +inf when nothing was detected
+        double cpuMsPerMinute;     // features + classifier, per minute of data
+        long windows;
+
+        Result(Params params) { this.params = params; }
+
+        /** True if this is at least as good on every axis and strictly better on one. */
+        boolean dominates(Result o) {
+            boolean noWorse = f1 >= o.f1 && meanLatencyMs <= o.meanLatencyMs && cpuMsPerMinute <= o.cpuMsPerMinute;
+            boolean better = f1 > o.f1 || meanLatencyMs < o.meanLatencyMs || cpuMsPerMinute < o.cpuMsPerMinute;
+            return noWorse && better;
+        }
+
+        @Override public String toString() {
+            return String.format(Locale.US, "%s -> f1=%.3f tp=%d fp=%d fn=%d latency=%.0fms cpu=%.2fms/min windows=%d",
+                    params, f1, truePositives, falsePositives, falseNegatives, meanLatencyMs, cpuMsPerMinute, windows);
+        }
+    }
+
+    // -----------------------------------
+    // Shared per-(period, window, hop) replay
+    // -----------------------------------
+
+    private static final int MIN_WINDOW_SAMPLES = 4;
+
+    private static final class TrackKey {
+        final int periodUs, windowMs, hopMs;
+
+        TrackKey(Params p) {
+            periodUs = p.samplingPeriodUs;
+            windowMs = p.windowMs;
+            hopMs = p.hopMs;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof TrackKey)) return false;
+            TrackKey k = (TrackKey) o;
+            return periodUs == k.periodUs && windowMs == k.windowMs && hopMs == k.hopMs;
+        }
+
+        @Override public int hashCode() { return Objects.hash(periodUs, windowMs, hopMs); }
+    }
+
+    /** What the pipeline sees at each sample and each window for one trace. */
+    private static final class Track {
+        int samples;
+        long[] sampleNs;
+        float[] delta; // per decimated sample; 0 for the first
+        int n;
+        long[] endNs = new long[64];
+        float[] maxDelta = new float[64]; // largest sample delta since the previous window
+        boolean[] pickUp = new boolean[64];
+        long cpuNs; // window work only
+
+        void add(long t, float d, boolean p) {
+            if (n == endNs.length) {
+                endNs = Arrays.copyOf(endNs, n * 2);
+                maxDelta = Arrays.copyOf(maxDelta, n * 2);
+                pickUp = Arrays.copyOf(pickUp, n * 2);
+            }
+            endNs[n] = t; maxDelta[n] = d; pickUp[n] = p;
+            n++;
+        }
+    }
+
+    private final List<Trace> traces;
+    private final FeatureClassifier classifier; // null -> threshold only
+    /** Pauses within this long after a pause are ignored (user is resuming). */
+    long refractoryMs = 3_000;
+    /** A pause this long after an event ends still counts for it. */
+    long matchToleranceMs = 1_000;
+    /** Replay {@link MotionPipeline#setRequireModelConfirmation}; ignored without a classifier. */
+    boolean requireModelConfirmation = false;
+
+    private final ConcurrentHashMap<TrackKey, Track[]> tracks = new ConcurrentHashMap<>();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    ParameterTuner(List<Trace> traces, FeatureClassifier classifier) {
+        this.traces = traces;
+        this.classifier = classifier;
+    }
+
+    /** Number of distinct (period, window, hop) replays computed so far. */
+    int sharedTrackCount() { return tracks.size(); }
+
+    /**
+     * Evaluate all candidates in parallel, in input order. Smoothing only affects
+     * confirmation mode; otherwise candidates are collapsed to smoothing 1 and duplicates
+     * dropped.
+     */
+    List<Result> evaluate(List<Params> candidates) {
+        if (!confirming()) {
+            LinkedHashSet<Params> distinct = new LinkedHashSet<>();
+            for (Params p : candidates) {
+                distinct.add(p.smoothing == 1 ? p
+                        : new Params(p.moveThreshold, p.samplingPeriodUs, p.windowMs, p.hopMs, 1));
+            }
+            candidates = new ArrayList<>(distinct);
+        }
+        return candidates.parallelStream().map(this::evaluate).collect(Collectors.toList());
+    }
+
+    Result evaluate(Params p) {
+        // Replay outside the map: computeIfAbsent would hold a bin lock for the whole replay
+        // and block other workers. Two racing workers may both build; the first one wins.
+        TrackKey key = new TrackKey(p);
+        Track[] perTrace = tracks.get(key);
+        if (perTrace == null) {
+            Track[] built = buildTracks(key);
+            perTrace = tracks.putIfAbsent(key, built);
+            if (perTrace == null) perTrace = built;
+        }
+        Result r = new Result(p);
+        double minutes = 0, cpuNs = 0, latencySum = 0;
+        for (int t = 0; t < traces.size(); t++) {
+            Trace trace = traces.get(t);
+            Track track = perTrace[t];
+            minutes += trace.minutes();
+            cpuNs += track.cpuNs;
+            r.windows += track.n;
+            latencySum += score(trace, track, p, r);
+        }
+        int tp = r.truePositives;
+        int denom = 2 * tp + r.falsePositives + r.falseNegatives;
+        r.f1 = denom == 0 ? 1.0 : 2.0 * tp / denom;
+        r.meanLatencyMs = tp == 0 ? Double.POSITIVE_INFINITY : latencySum / tp;
+        r.cpuMsPerMinute = minutes == 0 ? 0 : cpuNs / 1e6 / minutes;
+        return r;
+    }
+
+    private boolean confirming() {
+        return classifier != null && requireModelConfirmation;
+    }
+
+    private Track[] buildTracks(TrackKey key) {
+        Track[] out = new Track[traces.size()];
+        for (int i = 0; i < out.length; i++) out[i] = buildTrack(traces.get(i), key);
+        return out;
+    }
+
+    /** Decimate to the sampling period and run the pipeline's hop logic once. */
+    private Track buildTrack(Trace trace, TrackKey key) {
+        Track track = new Track();
+        track.sampleNs = new long[trace.tsNs.length];
+        track.delta = new float[trace.tsNs.length];
+        long periodNs = key.periodUs * 1000L;
+        int windowSamples = Math.max(MIN_WINDOW_SAMPLES, (int) (key.windowMs * 1000L / key.periodUs));
+        int hopSamples = Math.max(1, (int) (key.hopMs * 1000L / key.periodUs));
+
+        float[] bx = new float[windowSamples], by = new float[windowSamples], bz = new float[windowSamples];
+        float[][] window = new float[windowSamples][3];
+        int writePos = 0, count = 0, sinceHop = 0;
+        float lastX = 0, lastY = 0, lastZ = 0, maxDelta = 0;
+        long nextDue = Long.MIN_VALUE;
+
+        for (int i = 0; i < trace.tsNs.length; i++) {
+            long ts = trace.tsNs[i];
+            if (ts < nextDue) continue;
+            nextDue = (nextDue == Long.MIN_VALUE ? ts : nextDue) + periodNs;
+            float x = trace.x[i], y = trace.y[i], z = trace.z[i];
+
+            boolean first = count == 0;
+            bx[writePos] = x; by[writePos] = y; bz[writePos] = z;
+            writePos = (writePos + 1) % windowSamples;
+            if (count < windowSamples) count++;
+            track.sampleNs[track.samples] = ts;
+            if (first) {
+                track.samples++;
+                lastX = x; lastY = y; lastZ = z;
+                continue;
+            }
+            float d = Math.abs(x - lastX) + Math.abs(y - lastY) + Math.abs(z - lastZ);
+            lastX = x; lastY = y; lastZ = z;
+            track.delta[track.samples++] = d;
+            if (d > maxDelta) maxDelta = d;
+
+            sinceHop++;
+            if (count >= windowSamples && sinceHop >= hopSamples) {
+                sinceHop = 0;
+                boolean pickUp = false;
+                if (classifier != null) {
+                    long cpu0 = threads.getCurrentThreadCpuTime();
+                    for (int k = 0; k < windowSamples; k++) {
+                        int p = (writePos + k) % windowSamples;
+                        window[k][0] = bx[p]; window[k][1] = by[p]; window[k][2] = bz[p];
+                    }
+                    pickUp = classifier.isPickUp(MotionFeatures.compute(window));
+                    track.cpuNs += threads.getCurrentThreadCpuTime() - cpu0;
+                }
+                track.add(ts, maxDelta, pickUp);
+                maxDelta = 0;
+            }
+        }
+        return track;
+    }
+
+    /** Replays the decisions for one trace, updates counts, returns the latency sum (ms). */
+    private double score(Trace trace, Track track, Params p, Result r) {
+        List<Long> pauses = new ArrayList<>();
+        boolean moved = false;
+        int consecutive = 0;
+        long quietUntil = Long.MIN_VALUE;
+        if (!confirming()) {
+            // Immediate trip on the sample itself, as MotionPipeline.onSample does
+            for (int i = 0; i < track.samples; i++) {
+                long t = track.sampleNs[i];
+                if (t < quietUntil || track.delta[i] <= p.moveThreshold) continue;
+                pauses.add(t);
+                quietUntil = t + refractoryMs * 1_000_000L;
+            }
+        }
+        for (int i = 0; i < track.n && confirming(); i++) {
+            long t = track.endNs[i];
+            if (t < quietUntil) continue;
+            moved |= track.maxDelta[i] > p.moveThreshold;
+            consecutive = track.pickUp[i] ? consecutive + 1 : 0;
+            boolean fire = moved && consecutive >= p.smoothing;
+            moved = false;
+            if (fire) {
+                pauses.add(t);
+                quietUntil = t + refractoryMs * 1_000_000L;
+                consecutive = 0;
+            }
+        }
+
+        // Match each pause to the first unmatched event it falls in
+        boolean[] matched = new boolean[trace.eventStartNs.length];
+        long tolNs = matchToleranceMs * 1_000_000L;
+        double latency = 0;
+        for (long t : pauses) {
+            boolean hit = false;
+            for (int e = 0; e < matched.length; e++) {
+                if (!matched[e] && t >= trace.eventStartNs[e] && t <= trace.eventEndNs[e] + tolNs) {
+                    matched[e] = true;
+                    latency += (t - trace.eventStartNs[e]) / 1e6;
+                    hit = true;
+                    break;
+                }
+            }
+            if (hit) r.truePositives++; else r.falsePositives++;
+        }
+        for (boolean m : matched) if (!m) r.falseNegatives++;
+        return latency;
+    }
+
+    /** Non-dominated results (max F1, min latency, min CPU), best F1 first. */
+    static List<Result> paretoFront(List<Result> results) {
+        List<Result> front = new ArrayList<>();
+        for (Result a : results) {
+            boolean dominated = false;
+            for (Result b : results) {
+                if (b != a && b.dominates(a)) { dominated = true; break; }
+            }
+            if (!dominated) front.add(a);
+        }
+        front.sort(Comparator.comparingDouble((Result a) -> -a.f1)
+                .thenComparingDouble(a -> a.meanLatencyMs)
+                .thenComparingDouble(a -> a.cpuMsPerMinute));
+        return front;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.study111;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tuner checks on synthetic recordings: quick lifts (labelled) and table knocks
+ * (unlabelled 100 ms jolts that trip the threshold but are not pick-ups).
+ *
+ * Real recordings can be tuned with -Dtune.traces=/path/to/csv/dir; the Pareto
+ * front is printed (threshold-only, since the TFLite model does not run on the JVM).
+ */
+public class ParameterTunerTest {
+
+    private static final int RATE_HZ = 200;
+
+    private static ParameterTuner.Trace syntheticTrace(long seed) {
+        int n = RATE_HZ * 60;
+        long[] ts = new long[n];
+        float[] x = new float[n], y = new float[n], z = new float[n];
+        Random rnd = new Random(seed);
+        List<Long> starts = new ArrayList<>(), ends = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            double t = (double) i / RATE_HZ;
+            ts[i] = i * (1_000_000_000L / RATE_HZ);
+            double phase = t % 10.0;
+            float lift = (phase >= 5.0 && phase < 5.5) ? (float) Math.sin((phase - 5.0) * 2 * Math.PI) * 8f : 0f;
+            float knock = (phase >= 0.5 && phase < 0.6) ? 3f : 0f; // short jolt, survives decimation
+            x[i] = 0.02f * (float) rnd.nextGaussian() + lift * 0.5f;
+            y[i] = 0.02f * (float) rnd.nextGaussian() + lift;
+            z[i] = 9.81f + 0.02f * (float) rnd.nextGaussian() + lift * 0.3f + knock;
+            if (Math.abs(phase - 5.0) < 0.5 / RATE_HZ) starts.add(ts[i]);
+            if (Math.abs(phase - 5.5) < 0.5 / RATE_HZ) ends.add(ts[i]);
+        }
+        return new ParameterTuner.Trace("synthetic-" + seed, ts, x, y, z,
+                starts.stream().mapToLong(Long::longValue).toArray(),
+                ends.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    /** Stand-in for the model: a lift swings Y by several m/s^2 within the window. */
+    private static final ParameterTuner.FeatureClassifier RANGE_Y = f -> f[36] > 2f;
+
+    private static ParameterTuner.Space space() {
+        ParameterTuner.Space s = new ParameterTuner.Space();
+        s.moveThresholds = new float[]{0.5f, 1f, 2f};
+        s.samplingPeriodsUs = new int[]{20_000, 66_000};
+        s.windowsMs = new int[]{2_000};
+        s.hopsMs = new int[]{250, 500};
+        s.smoothings = new int[]{1, 2};
+        return s;
+    }
+
+    @Test
+    public void sharesReplayAcrossThresholdAndSmoothing() {
+        ParameterTuner tuner = new ParameterTuner(Arrays.asList(syntheticTrace(1), syntheticTrace(2)), RANGE_Y);
+        tuner.requireModelConfirmation = true;
+        List<ParameterTuner.Result> results = tuner.evaluate(space().grid());
+
+        assertEquals(24, results.size());
+        // Only (period, window, hop) needs its own replay
+        assertEquals(4, tuner.sharedTrackCount());
+        for (ParameterTuner.Result r : results) {
+            assertTrue(r.cpuMsPerMinute > 0);
+            assertTrue(r.windows > 0);
+        }
+    }
+
+    @Test
+    public void thresholdOnlyCollapsesSmoothing() {
+        ParameterTuner tuner = new ParameterTuner(Arrays.asList(syntheticTrace(1)), null);
+        List<ParameterTuner.Result> results = tuner.evaluate(space().grid());
+
+        // Smoothing can't change a threshold-only replay: 2 x 12 candidates -> 12
+        assertEquals(12, results.size());
+        Set<ParameterTuner.Params> seen = new HashSet<>();
+        for (ParameterTuner.Result r : results) {
+            assertEquals(1, r.params.smoothing);
+            assertTrue(r.params.toString(), seen.add(r.params));
+        }
+        assertEquals(4, tuner.sharedTrackCount());
+    }
+
+    @Test
+    public void classifierGateRejectsKnocks() {
+        List<ParameterTuner.Trace> traces = Arrays.asList(syntheticTrace(3));
+        ParameterTuner.Params p = new ParameterTuner.Params(1f, 66_000, 2_000, 500, 1);
+
+        ParameterTuner confirming = new ParameterTuner(traces, RANGE_Y);
+        confirming.requireModelConfirmation = true;
+        ParameterTuner.Result gated = confirming.evaluate(p);
+        ParameterTuner.Result thresholdOnly = new ParameterTuner(traces, null).evaluate(p);
+
+        assertEquals(6, gated.truePositives);
+        assertEquals(0, gated.falsePositives);
+        assertEquals(1.0, gated.f1, 1e-9);
+        assertTrue(gated.meanLatencyMs < 1_500);
+        assertTrue(thresholdOnly.falsePositives >= 5);
+        assertTrue(thresholdOnly.f1 < gated.f1);
+    }
+
+    @Test
+    public void defaultReplayTripsImmediatelyLikeThePipeline() {
+        // A lift 0.3 s into the recording, before the first 2 s window is full
+        int n = RATE_HZ * 3;
+        long[] ts = new long[n];
+        float[] x = new float[n], y = new float[n], z = new float[n];
+        for (int i = 0; i < n; i++) {
+            double t = (double) i / RATE_HZ;
+            ts[i] = i * (1_000_000_000L / RATE_HZ);
+            y[i] = (t >= 0.3 && t < 0.8) ? (float) Math.sin((t - 0.3) * 2 * Math.PI) * 8f : 0f;
+            z[i] = 9.81f;
+        }
+        ParameterTuner.Trace early = new ParameterTuner.Trace("early", ts, x, y, z,
+                new long[]{ts[(int) (0.3 * RATE_HZ)]}, new long[]{ts[(int) (0.8 * RATE_HZ)]});
+        ParameterTuner.Params p = new ParameterTuner.Params(1f, 66_000, 2_000, 500, 1);
+
+        ParameterTuner.Result immediate = new ParameterTuner(Arrays.asList(early), RANGE_Y).evaluate(p);
+        assertEquals(1, immediate.truePositives);
+        assertTrue(immediate.meanLatencyMs < 300);
+
+        ParameterTuner confirming = new ParameterTuner(Arrays.asList(early), RANGE_Y);
+        confirming.requireModelConfirmation = true;
+        assertEquals(0, confirming.evaluate(p).truePositives); // no full window during the lift
+
+        // Knocks trip the threshold whether or not a classifier is given
+        List<ParameterTuner.Trace> knocks = Arrays.asList(syntheticTrace(3));
+        ParameterTuner.Result withModel = new ParameterTuner(knocks, RANGE_Y).evaluate(p);
+        ParameterTuner.Result thresholdOnly = new ParameterTuner(knocks, null).evaluate(p);
+        assertEquals(thresholdOnly.falsePositives, withModel.falsePositives);
+        assertEquals(thresholdOnly.truePositives, withModel.truePositives);
+        assertTrue(withModel.cpuMsPerMinute > 0); // windows are still classified for the display
+        assertEquals(0, thresholdOnly.cpuMsPerMinute, 0);
+    }
+
+    @Test
+    public void paretoFrontIsNonDominated() {
+        ParameterTuner tuner = new ParameterTuner(Arrays.asList(syntheticTrace(4)), RANGE_Y);
+        tuner.requireModelConfirmation = true;
+        List<ParameterTuner.Result> all = tuner.evaluate(space().random(40, 7));
+        List<ParameterTuner.Result> front = ParameterTuner.paretoFront(all);
+
+        assertFalse(front.isEmpty());
+        for (ParameterTuner.Result a : front) {
+            for (ParameterTuner.Result b : all) assertFalse(b.dominates(a));
+        }
+        for (ParameterTuner.Result a : all) {
+            if (front.contains(a)) continue;
+            boolean covered = false;
+            for (ParameterTuner.Result f : front) covered |= f.dominates(a);
+            assertTrue(a.toString(), covered);
+        }
+    }
+
+    @Test
+    public void loadsLabelledCsv() throws IOException {
+        File f = File.createTempFile("trace", ".csv");
+        f.deleteOnExit();
+        try (FileWriter w = new FileWriter(f)) {
+            w.write("t_ms,x,y,z,label\n");
+            w.write("0,0,0,9.8,0\n10,0,1,9.8,1\n20,0,2,9.8,1\n30,0,0,9.8,0\n40,0,3,9.8,1\n");
+        }
+        ParameterTuner.Trace t = ParameterTuner.Trace.loadCsv(f);
+
+        assertEquals(5, t.tsNs.length);
+        assertArrayEquals(new long[]{10_000_000L, 40_000_000L}, t.eventStartNs);
+        assertArrayEquals(new long[]{20_000_000L, 40_000_000L}, t.eventEndNs);
+        assertEquals(2f, t.y[2], 0f);
+    }
+
+    @Test
+    public void tuneConfiguredTraces() throws IOException {
+        String dir = System.getProperty("tune.traces");
+        if (dir == null || dir.isEmpty()) return;
+        File[] files = new File(dir).listFiles((d, name) -> name.endsWith(".csv"));
+        if (files == null) return;
+        List<ParameterTuner.Trace> traces = new ArrayList<>();
+        for (File f : files) traces.add(ParameterTuner.Trace.loadCsv(f));
+
+        ParameterTuner.Space s = space();
+        s.moveThresholds = new float[]{0.5f, 1f, 1.5f, 2f, 3f, 4f};
+        s.samplingPeriodsUs = new int[]{20_000, 40_000, 66_000, 100_000, 200_000};
+        s.hopsMs = new int[]{250, 500, 1_000, 2_000};
+        ParameterTuner tuner = new ParameterTuner(traces, null);
+        for (ParameterTuner.Result r : ParameterTuner.paretoFront(tuner.evaluate(s.grid()))) {
+            System.out.println("[tune] " + r);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.study111;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PersonalizationTrainerTest {
+
+    private static final int F = 39;
+
+    /** Base model always leans pick_up; feature 3 tells the true class for this user. */
+    private static float[] features(Random rnd, boolean pickUp) {
+        float[] f = new float[F];
+        for (int j = 0; j < F; j++) f[j] = (float) rnd.nextGaussian();
+        f[3] = (pickUp ? 1.5f : 0.2f) + 0.1f * (float) rnd.nextGaussian();
+        return f;
+    }
+
+    private static final float[] BASE = {0.3f, 0.7f};
+
+    @Test
+    public void waitsForBothClasses() {
+        PersonalizationTrainer t = new PersonalizationTrainer(F, 2, 64);
+        Random rnd = new Random(1);
+        for (int i = 0; i < 10; i++) t.addExample(features(rnd, false), BASE, 0);
+
+        assertFalse(t.canTrain());
+        assertEquals(0, t.train(100, Long.MAX_VALUE));
+        assertNull(t.getCorrection());
+    }
+
+    @Test
+    public void learnsToSuppressFalsePauses() {
+        PersonalizationTrainer t = new PersonalizationTrainer(F, 2, 128);
+        Random rnd = new Random(2);
+        for (int i = 0; i < 60; i++) {
+            boolean pickUp = (i % 3 == 0);
+            t.addExample(features(rnd, pickUp), BASE, pickUp ? 1 : 0);
+        }
+        assertTrue(t.train(400, Long.MAX_VALUE) > 0);
+        ScoreCorrection c = t.getCorrection();
+        assertNotNull(c);
+
+        int correct = 0;
+        for (int i = 0; i < 100; i++) {
+            boolean pickUp = (i % 2 == 0);
+            float[] s = BASE.clone();
+            c.apply(features(rnd, pickUp), s);
+            assertEquals(1f, s[0] + s[1], 1e-5f);
+            if ((s[1] > s[0]) == pickUp) correct++;
+        }
+        assertTrue("accuracy " + correct, correct >= 90);
+    }
+
+    @Test
+    public void publishedSnapshotIsImmutable() {
+        PersonalizationTrainer t = new PersonalizationTrainer(F, 2, 32);
+        Random rnd = new Random(3);
+        for (int i = 0; i < 20; i++) t.addExample(features(rnd, i % 2 == 0), BASE, i % 2 == 0 ? 1 : 0);
+        t.train(10, Long.MAX_VALUE);
+        ScoreCorrection first = t.getCorrection();
+        float[] probe = features(rnd, true);
+        float[] before = BASE.clone();
+        first.apply(probe, before);
+
+        t.train(200, Long.MAX_VALUE);
+
+        assertNotSame(first, t.getCorrection());
+        float[] after = BASE.clone();
+        first.apply(probe, after);
+        assertArrayEquals(before, after, 0f);
+    }
+
+    @Test
+    public void respectsReplayCapacity() {
+        PersonalizationTrainer t = new PersonalizationTrainer(F, 2, 8);
+        Random rnd = new Random(4);
+        for (int i = 0; i < 8; i++) t.addExample(features(rnd, false), BASE, 0);
+        for (int i = 0; i < 3; i++) t.addExample(features(rnd, true), BASE, 1);
+
+        assertEquals(8, t.getExampleCount());
+        assertEquals(5, t.getClassCount(0));
+        assertEquals(3, t.getClassCount(1));
+    }
+
+    @Test
+    public void saveLoad_restoresCorrection() throws IOException {
+        PersonalizationTrainer t = new PersonalizationTrainer(F, 2, 64);
+        Random rnd = new Random(5);
+        for (int i = 0; i < 30; i++) t.addExample(features(rnd, i % 2 == 0), BASE, i % 2 == 0 ? 1 : 0);
+        t.train(100, Long.MAX_VALUE);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        t.save(new DataOutputStream(bos));
+        PersonalizationTrainer u = new PersonalizationTrainer(F, 2, 64);
+        u.load(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())));
+
+        float[] probe = features(rnd, true);
+        float[] a = BASE.clone(), b = BASE.clone();
+        t.getCorrection().apply(probe, a);
+        u.getCorrection().apply(probe, b);
+        assertArrayEquals(a, b, 1e-5f);
+        assertEquals(30, u.getExampleCount());
+    }
+
+    @Test
+    public void load_rejectsBadFilesWithoutTouchingState() throws IOException {
+        PersonalizationTrainer t = new PersonalizationTrainer(F, 2, 64);
+        Random rnd = new Random(6);
+        for (int i = 0; i < 20; i++) t.addExample(features(rnd, i % 2 == 0), BASE, i % 2 == 0 ? 1 : 0);
+        t.train(50, Long.MAX_VALUE);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        t.save(new DataOutputStream(bos));
+        byte[] good = bos.toByteArray();
+
+        PersonalizationTrainer u = new PersonalizationTrainer(F, 2, 64);
+        for (int i = 0; i < 5; i++) u.addExample(features(rnd, true), BASE, 1);
+
+        byte[] truncated = Arrays.copyOf(good, good.length - 3);
+        byte[] badLabel = good.clone();
+        badLabel[16 + 4 * (F + 2)] = 7; // first example's label
+        byte[] tooMany = good.clone();
+        tooMany[15] = 65; // count > capacity
+        for (byte[] bad : new byte[][]{truncated, badLabel, tooMany}) {
+            try {
+                u.load(new DataInputStream(new ByteArrayInputStream(bad)));
+                fail("expected IOException");
+            } catch (IOException expected) {
+                // state untouched
+            }
+            assertEquals(5, u.getExampleCount());
+            assertEquals(0, u.getClassCount(0));
+            assertNull(u.getCorrection());
+        }
+
+        // Loading replaces rather than appends, so a retry doesn't double-count
+        u.load(new DataInputStream(new ByteArrayInputStream(good)));
+        u.load(new DataInputStream(new ByteArrayInputStream(good)));
+        assertEquals(20, u.getExampleCount());
+        assertEquals(10, u.getClassCount(0));
+        assertEquals(10, u.getClassCount(1));
+    }
+}
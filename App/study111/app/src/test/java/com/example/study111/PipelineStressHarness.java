@@ -0,0 +1,276 @@
+package com.example.study111;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Headless load harness for the detection path.
+ *
+ * A fake sensor thread emits synthetic accelerometer samples at a fixed rate
+ * (optionally in bursts, like a hardware FIFO flush) into a bounded queue that
+ * stands in for the sensor event queue. A consumer thread drains it into
+ * {@link MotionPipeline#onSample}, exactly as onSensorChanged does, with a
+ * classifier that runs the real {@link MotionFeatures} plus a small dense layer.
+ *
+ * Reports sustained throughput, decision latency percentiles (window's last
+ * sample enqueued -> result), dropped samples (queue full), coalesced samples
+ * (still queued when a later delivery arrived, i.e. the consumer fell behind; paced
+ * runs only) and GC activity.
+ *
+ * With {@code paced(false)} the producer ignores the clock and waits for queue
+ * space instead of dropping, so counts are deterministic and independent of
+ * machine speed. The pipeline uses the production window cap
+ * ({@link MotionPipeline#DEFAULT_MAX_WINDOW_SAMPLES}).
+ */
+final class PipelineStressHarness {
+
+    static final class Config {
+        int rateHz = 200;
+        /** Must exceed the 2 s window to produce decisions. */
+        int durationMs = 5_000;
+        /** Samples delivered together per burst (1 = evenly paced). */
+        int burstSize = 1;
+        /** Sensor queue capacity before samples are dropped. */
+        int queueCapacity = 256;
+        /** Hidden units in the fake dense layer (inference cost knob). */
+        int hiddenUnits = 32;
+        /** Real-time delivery with drops; false = as fast as the consumer drains, lossless. */
+        boolean paced = true;
+
+        Config rate(int hz) { rateHz = hz; return this; }
+        Config duration(int ms) { durationMs = ms; return this; }
+        Config bursts(int n) { burstSize = n; return this; }
+        Config queue(int n) { queueCapacity = n; return this; }
+        Config paced(boolean p) { paced = p; return this; }
+    }
+
+    static final class Report {
+        int rateHz;
+        boolean paced;
+        long produced, processed, dropped, coalesced, decisions;
+        double throughputHz;
+        double p50Ms, p95Ms, p99Ms, maxMs;
+        long gcCount, gcTimeMs;
+
+        boolean keptUp() {
+            return dropped == 0 && processed == produced;
+        }
+
+        @Override public String toString() {
+            // Unpaced producers run ahead by design, so a backlog there says nothing
+            return String.format(Locale.US,
+                    "rate=%dHz produced=%d processed=%d dropped=%d coalesced=%s throughput=%.1fHz "
+                            + "decisions=%d latency p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms gc=%d (%dms)",
+                    rateHz, produced, processed, dropped, paced ? Long.toString(coalesced) : "n/a", throughputHz,
+                    decisions, p50Ms, p95Ms, p99Ms, maxMs, gcCount, gcTimeMs);
+        }
+    }
+
+    // -----------------------------------
+    // Bounded SPSC queue of samples (primitive arrays, no per-sample objects)
+    // -----------------------------------
+    private static final class SampleQueue {
+        final int cap;
+        final float[] x, y, z;
+        final long[] sensorTs, enqueuedNs;
+        volatile long head = 0, tail = 0; // head: next to read, tail: next to write
+        volatile boolean closed = false;   // producer finished
+
+        SampleQueue(int cap) {
+            this.cap = cap;
+            x = new float[cap]; y = new float[cap]; z = new float[cap];
+            sensorTs = new long[cap]; enqueuedNs = new long[cap];
+        }
+
+        boolean offer(float vx, float vy, float vz, long ts, long now) {
+            long t = tail;
+            if (t - head >= cap) return false;
+            int i = (int) (t % cap);
+            x[i] = vx; y[i] = vy; z[i] = vz; sensorTs[i] = ts; enqueuedNs[i] = now;
+            tail = t + 1;
+            return true;
+        }
+    }
+
+    /** Synthetic accelerometer: gravity + noise, with a pick-up gesture every few seconds. */
+    static final class SyntheticSource {
+        private long seed = 42;
+        private final int rateHz;
+        private long n = 0;
+
+        SyntheticSource(int rateHz) { this.rateHz = rateHz; }
+
+        private float noise() {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            return ((seed >>> 40) / (float) (1 << 24) - 0.5f) * 0.05f;
+        }
+
+        /** Writes the next sample into out[0..2]. */
+        void next(float[] out) {
+            double t = (double) n++ / rateHz;
+            double phase = t % 5.0;
+            float lift = (phase > 4.0) ? (float) Math.sin((phase - 4.0) * Math.PI) * 4f : 0f;
+            out[0] = noise() + lift * 0.5f;
+            out[1] = noise() + lift;
+            out[2] = 9.81f + noise() + lift * 0.3f;
+        }
+    }
+
+    static Report run(Config cfg) throws InterruptedException {
+        final SampleQueue q = new SampleQueue(cfg.queueCapacity);
+        final long totalSamples = (long) cfg.rateHz * cfg.durationMs / 1000;
+        final long periodNs = 1_000_000_000L / cfg.rateHz;
+
+        final long[] latencies = new long[(int) Math.min(totalSamples + 1, 1 << 20)];
+        final int[] nLat = {0};
+        final long[] lastDequeuedEnqNs = {0};
+        final long[] processed = {0}, coalesced = {0};
+
+        float[] hidden = new float[cfg.hiddenUnits];
+        float[] w1 = new float[MotionFeatures.NUM_FEATURES * cfg.hiddenUnits];
+        for (int i = 0; i < w1.length; i++) w1[i] = ((i * 31) % 17 - 8) / 64f;
+
+        MotionPipeline.WindowClassifier classifier = window -> {
+            float[] f = MotionFeatures.compute(window);
+            float out = 0f;
+            for (int h = 0; h < hidden.length; h++) {
+                float a = 0f;
+                for (int j = 0; j < f.length; j++) a += f[j] * w1[h * f.length + j];
+                hidden[h] = Math.max(0f, a);
+                out += hidden[h];
+            }
+            float p = 1f / (1f + (float) Math.exp(-out * 1e-3f));
+            return new TFLiteClassifier.Result(p > 0.5f ? "pick_up" : "stationary", Math.max(p, 1 - p),
+                    new float[]{1 - p, p});
+        };
+
+        MotionPipeline.Listener listener = new MotionPipeline.Listener() {
+            @Override public void onMovementDetected() {}
+            @Override public void onResult(TFLiteClassifier.Result result) {
+                if (nLat[0] < latencies.length) {
+                    latencies[nLat[0]++] = System.nanoTime() - lastDequeuedEnqNs[0];
+                }
+            }
+            @Override public void onSamplingPeriodChanged(int periodUs) {}
+        };
+
+        // Run at the requested rate with the shortest hop: governor bounds pinned, budget unlimited.
+        DetectionGovernor.Config gc = new DetectionGovernor.Config();
+        gc.initialHopMs = gc.minHopMs;
+        int periodUs = (int) (periodNs / 1000);
+        gc.minSamplingPeriodUs = periodUs;
+        gc.maxSamplingPeriodUs = periodUs;
+        gc.initialSamplingPeriodUs = periodUs;
+        gc.cpuBudgetNsPerSec = Long.MAX_VALUE / 4;
+        gc.maxEventRateHz = Float.MAX_VALUE;
+        MotionPipeline pipeline = new MotionPipeline(classifier, new DetectionGovernor(gc),
+                () -> ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime(), listener,
+                MotionPipeline.DEFAULT_MOVE_THRESHOLD, MotionPipeline.DEFAULT_WINDOW_MS,
+                MotionPipeline.DEFAULT_MAX_WINDOW_SAMPLES);
+        pipeline.reset();
+
+        Thread consumer = new Thread(() -> {
+            int idle = 0;
+            while (true) {
+                long h = q.head;
+                long t = q.tail;
+                if (h == t) {
+                    if (q.closed && q.tail == h) break;
+                    // Spin briefly for latency, then back off so an idle queue doesn't burn a core
+                    if (++idle < 100) Thread.onSpinWait();
+                    else LockSupport.parkNanos(50_000L);
+                    continue;
+                }
+                idle = 0;
+                // A burst arrives at once; only samples older than the newest delivery are late
+                long newestEnqNs = q.enqueuedNs[(int) ((t - 1) % q.cap)];
+                for (; h < t; h++) {
+                    int i = (int) (h % q.cap);
+                    if (cfg.paced && q.enqueuedNs[i] < newestEnqNs) coalesced[0]++;
+                    lastDequeuedEnqNs[0] = q.enqueuedNs[i];
+                    pipeline.onSample(q.x[i], q.y[i], q.z[i], q.sensorTs[i]);
+                    processed[0]++;
+                    q.head = h + 1;
+                }
+            }
+        }, "stress-consumer");
+        consumer.setDaemon(true); // a hung consumer must not keep the test JVM alive
+
+        long gcCount0 = 0, gcTime0 = 0;
+        for (GarbageCollectorMXBean b : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount0 += Math.max(0, b.getCollectionCount());
+            gcTime0 += Math.max(0, b.getCollectionTime());
+        }
+
+        SyntheticSource src = new SyntheticSource(cfg.rateHz);
+        float[] s = new float[3];
+        long dropped = 0;
+        consumer.start();
+        long start = System.nanoTime();
+        long produced = 0;
+        while (produced < totalSamples) {
+            // Wait until the whole burst is "due", then deliver it at once
+            long dueNs = start + (produced + cfg.burstSize - 1) * periodNs;
+            long wait;
+            while (cfg.paced && (wait = dueNs - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(Math.min(wait, 200_000L));
+            }
+            long now = System.nanoTime();
+            for (int b = 0; b < cfg.burstSize && produced < totalSamples; b++, produced++) {
+                src.next(s);
+                long sensorTs = produced * periodNs;
+                if (cfg.paced) {
+                    if (!q.offer(s[0], s[1], s[2], sensorTs, now)) dropped++;
+                } else {
+                    while (!q.offer(s[0], s[1], s[2], sensorTs, now)) {
+                        if (!consumer.isAlive()) throw new AssertionError("stress consumer died");
+                        LockSupport.parkNanos(50_000L);
+                    }
+                }
+            }
+        }
+        q.closed = true;
+        consumer.join(10_000);
+        if (consumer.isAlive()) {
+            consumer.interrupt();
+            throw new AssertionError("stress consumer still running 10 s after the producer finished ("
+                    + processed[0] + "/" + produced + " samples)");
+        }
+        double elapsedSec = (System.nanoTime() - start) / 1e9;
+
+        long gcCount1 = 0, gcTime1 = 0;
+        for (GarbageCollectorMXBean b : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount1 += Math.max(0, b.getCollectionCount());
+            gcTime1 += Math.max(0, b.getCollectionTime());
+        }
+
+        Report r = new Report();
+        r.rateHz = cfg.rateHz;
+        r.paced = cfg.paced;
+        r.produced = produced;
+        r.processed = processed[0];
+        r.dropped = dropped;
+        r.coalesced = coalesced[0];
+        r.throughputHz = r.processed / elapsedSec;
+        r.decisions = nLat[0];
+        r.gcCount = gcCount1 - gcCount0;
+        r.gcTimeMs = gcTime1 - gcTime0;
+        if (nLat[0] > 0) {
+            long[] sorted = Arrays.copyOf(latencies, nLat[0]);
+            Arrays.sort(sorted);
+            r.p50Ms = percentile(sorted, 0.50) / 1e6;
+            r.p95Ms = percentile(sorted, 0.95) / 1e6;
+            r.p99Ms = percentile(sorted, 0.99) / 1e6;
+            r.maxMs = sorted[sorted.length - 1] / 1e6;
+        }
+        return r;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.study111;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Drives the detection pipeline at SENSOR_DELAY_FASTEST-like rates.
+ *
+ * The default suite only checks counts on lossless, unpaced runs, so it doesn't
+ * depend on machine speed. The real-time runs (throughput, drops, latency) are
+ * opt-in with -Dstress=true, and extra rates can be swept with
+ * -Dstress.rates=200,500,1000,2000 to find where the pipeline starts to lag;
+ * the reports are printed either way.
+ */
+public class PipelineStressTest {
+
+    private static boolean realTime() {
+        return Boolean.getBoolean("stress");
+    }
+
+    private static PipelineStressHarness.Report run(PipelineStressHarness.Config cfg) throws InterruptedException {
+        PipelineStressHarness.Report r = PipelineStressHarness.run(cfg);
+        System.out.println("[stress] burst=" + cfg.burstSize + " paced=" + cfg.paced + " " + r);
+        return r;
+    }
+
+    // -----------------------------------
+    // Counts only (default suite)
+    // -----------------------------------
+    @Test
+    public void processesEverySampleAt200Hz() throws InterruptedException {
+        PipelineStressHarness.Report r = run(new PipelineStressHarness.Config().rate(200).paced(false));
+        assertEquals(r.toString(), 1000, r.produced);
+        assertEquals("not measured unpaced", 0, r.coalesced);
+        assertEquals(r.toString(), r.produced, r.processed);
+        assertEquals(0, r.dropped);
+        assertTrue(r.toString(), r.decisions >= 10);
+    }
+
+    @Test
+    public void processesEverySampleWithFifoBursts() throws InterruptedException {
+        // 500 Hz delivered 25 samples at a time through a queue smaller than a burst
+        PipelineStressHarness.Report r = run(new PipelineStressHarness.Config()
+                .rate(500).bursts(25).queue(16).paced(false));
+        assertEquals(r.toString(), 2500, r.produced);
+        assertEquals(r.toString(), r.produced, r.processed);
+        assertEquals(0, r.dropped);
+        assertTrue(r.toString(), r.decisions >= 10);
+    }
+
+    // -----------------------------------
+    // Real time (-Dstress=true)
+    // -----------------------------------
+    @Test
+    public void keepsUpAt200Hz() throws InterruptedException {
+        assumeTrue(realTime());
+        PipelineStressHarness.Report r = run(new PipelineStressHarness.Config().rate(200));
+        assertTrue(r.toString(), r.keptUp());
+        assertTrue(r.decisions >= 10);
+    }
+
+    @Test
+    public void keepsUpAt500Hz() throws InterruptedException {
+        assumeTrue(realTime());
+        PipelineStressHarness.Report r = run(new PipelineStressHarness.Config().rate(500));
+        assertTrue(r.toString(), r.keptUp());
+        assertTrue(r.throughputHz > 0.9 * 500);
+    }
+
+    @Test
+    public void keepsUpWithFifoBursts() throws InterruptedException {
+        assumeTrue(realTime());
+        // 500 Hz delivered 25 samples at a time (50 ms batching)
+        PipelineStressHarness.Report r = run(new PipelineStressHarness.Config().rate(500).bursts(25));
+        assertTrue(r.toString(), r.keptUp());
+    }
+
+    @Test
+    public void tinyQueueReportsDrops() throws InterruptedException {
+        assumeTrue(realTime());
+        // Bursts larger than the queue must be counted as drops, not silently lost
+        PipelineStressHarness.Report r = run(new PipelineStressHarness.Config()
+                .rate(500).bursts(64).queue(16).duration(1_000));
+        assertTrue(r.dropped > 0);
+        assertEquals(r.produced, r.processed + r.dropped);
+    }
+
+    @Test
+    public void sweepConfiguredRates() throws InterruptedException {
+        String rates = System.getProperty("stress.rates");
+        assumeTrue(rates != null && !rates.isEmpty());
+        for (String s : rates.split(",")) {
+            run(new PipelineStressHarness.Config().rate(Integer.parseInt(s.trim())));
+        }
+    }
+}
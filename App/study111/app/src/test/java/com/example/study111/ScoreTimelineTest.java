@@ -0,0 +1,82 @@
+package com.example.study111;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ScoreTimelineTest {
+
+    @Test
+    public void append_storesQuantizedColumns() {
+        ScoreTimeline t = new ScoreTimeline(8, 2);
+        t.append(1000, 1, new float[]{0.25f, 0.75f});
+        t.append(1100, 0, new float[]{0.9f, 0.1f});
+
+        assertEquals(2, t.size());
+        assertEquals(1000, t.timeAt(0));
+        assertEquals(1100, t.timeAt(1));
+        assertEquals(1, t.labelAt(0));
+        assertEquals(0.75f, t.scoreAt(0, 1), 1f / 32767f);
+        assertEquals(0.9f, t.scoreAt(1, 0), 1f / 32767f);
+    }
+
+    @Test
+    public void append_overwritesOldestWhenFull() {
+        ScoreTimeline t = new ScoreTimeline(4, 2);
+        for (int i = 0; i < 10; i++) t.append(i * 100L, 0, new float[]{i / 10f, 0f});
+
+        assertEquals(4, t.size());
+        assertEquals(600, t.timeAt(0));
+        assertEquals(900, t.timeAt(3));
+    }
+
+    @Test
+    public void downsample_boundsPointsAndKeepsSpike() {
+        ScoreTimeline t = new ScoreTimeline(20000, 2);
+        for (int i = 0; i < 15000; i++) {
+            float pickUp = (i == 7777) ? 1f : 0.05f;
+            t.append(i * 100L, 0, new float[]{1f - pickUp, pickUp});
+        }
+
+        long[] ts = new long[300];
+        float[] ys = new float[300];
+        int n = t.downsample(1, 0, Long.MAX_VALUE, 300, ts, ys);
+
+        assertEquals(300, n);
+        assertEquals(0, ts[0]);
+        assertEquals(14999 * 100L, ts[n - 1]);
+        boolean sawSpike = false;
+        for (int i = 0; i < n; i++) {
+            if (i > 0) assertTrue(ts[i] > ts[i - 1]);
+            if (ts[i] == 777700L && ys[i] > 0.99f) sawSpike = true;
+        }
+        assertTrue(sawSpike);
+    }
+
+    @Test
+    public void downsample_respectsRange() {
+        ScoreTimeline t = new ScoreTimeline(100, 2);
+        for (int i = 0; i < 100; i++) t.append(i * 10L, 0, new float[]{0.5f, 0.5f});
+
+        long[] ts = new long[50];
+        float[] ys = new float[50];
+        int n = t.downsample(0, 200, 290, 50, ts, ys);
+
+        assertEquals(10, n);
+        assertEquals(200, ts[0]);
+        assertEquals(290, ts[9]);
+    }
+
+    @Test
+    public void downsample_extremeRangesDoNotOverflow() {
+        ScoreTimeline t = new ScoreTimeline(10, 2);
+        for (int i = 0; i < 5; i++) t.append(-5_000L + i * 10L, 0, new float[]{0.5f, 0.5f});
+
+        long[] ts = new long[10];
+        float[] ys = new float[10];
+        assertEquals(5, t.downsample(0, Long.MIN_VALUE, Long.MAX_VALUE, 10, ts, ys));
+        assertEquals(-5_000L, ts[0]);
+        assertEquals(0, t.downsample(0, Long.MIN_VALUE, -5_001L, 10, ts, ys));
+        assertEquals(0, t.downsample(0, 10_000L, Long.MAX_VALUE, 10, ts, ys));
+    }
+}